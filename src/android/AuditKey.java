@@ -0,0 +1,117 @@
+package com.eov.cordova.watermeter;
+
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+import android.util.Log;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.KeyStore;
+import java.security.SecureRandom;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * HMAC key for the audit log chain
+ * The key is random, created once and stored in the app's files wrapped by a non-exportable
+ * AndroidKeyStore AES key, so copying the audit directory alone does not reveal it.
+ */
+final class AuditKey {
+    private static final String TAG = "WaterMeterAuditKey";
+    private static final String KEYSTORE = "AndroidKeyStore";
+    private static final String WRAP_ALIAS = "watermeter-audit-wrap";
+    private static final String CIPHER = "AES/GCM/NoPadding";
+    private static final int KEY_BYTES = 32;
+    private static final int TAG_BITS = 128;
+
+    private AuditKey() {
+    }
+
+    /**
+     * Unwrap the key stored in file, creating it on first use
+     * A key that can no longer be unwrapped (keystore cleared, backup restored to another
+     * device) is moved aside and replaced; the log then reports the old segments under "key".
+     */
+    static SecretKey load(File file) throws Exception {
+        SecretKey wrapKey = wrapKey();
+        if (file.exists()) {
+            try {
+                return new SecretKeySpec(unwrap(wrapKey, file), "HmacSHA256");
+            } catch (Exception e) {
+                File aside = new File(file.getPath() + "." + System.currentTimeMillis());
+                Log.w(TAG, "Cannot unwrap audit key, replacing it: " + e.getMessage());
+                if (!file.renameTo(aside)) {
+                    throw new IOException("Cannot move unreadable audit key aside: " + file.getPath());
+                }
+            }
+        }
+        byte[] raw = new byte[KEY_BYTES];
+        new SecureRandom().nextBytes(raw);
+        wrap(wrapKey, raw, file);
+        return new SecretKeySpec(raw, "HmacSHA256");
+    }
+
+    private static SecretKey wrapKey() throws Exception {
+        KeyStore keyStore = KeyStore.getInstance(KEYSTORE);
+        keyStore.load(null);
+        KeyStore.Entry entry = keyStore.getEntry(WRAP_ALIAS, null);
+        if (entry instanceof KeyStore.SecretKeyEntry) {
+            return ((KeyStore.SecretKeyEntry) entry).getSecretKey();
+        }
+        KeyGenerator generator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES, KEYSTORE);
+        generator.init(new KeyGenParameterSpec.Builder(WRAP_ALIAS,
+                KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+            .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+            .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+            .setKeySize(256)
+            .build());
+        return generator.generateKey();
+    }
+
+    private static byte[] unwrap(SecretKey wrapKey, File file) throws Exception {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            byte[] iv = new byte[in.readUnsignedByte()];
+            in.readFully(iv);
+            byte[] sealed = new byte[in.readUnsignedShort()];
+            in.readFully(sealed);
+            Cipher cipher = Cipher.getInstance(CIPHER);
+            cipher.init(Cipher.DECRYPT_MODE, wrapKey, new GCMParameterSpec(TAG_BITS, iv));
+            byte[] raw = cipher.doFinal(sealed);
+            if (raw.length != KEY_BYTES) {
+                throw new IOException("Unexpected audit key length " + raw.length);
+            }
+            return raw;
+        }
+    }
+
+    private static void wrap(SecretKey wrapKey, byte[] raw, File file) throws Exception {
+        // Keystore keys pick their own IV
+        Cipher cipher = Cipher.getInstance(CIPHER);
+        cipher.init(Cipher.ENCRYPT_MODE, wrapKey);
+        byte[] sealed = cipher.doFinal(raw);
+        byte[] iv = cipher.getIV();
+
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(stream)) {
+            out.writeByte(iv.length);
+            out.write(iv);
+            out.writeShort(sealed.length);
+            out.write(sealed);
+            out.flush();
+            stream.getFD().sync();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Failed to write audit key: " + file.getPath());
+        }
+    }
+}
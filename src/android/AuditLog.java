@@ -0,0 +1,921 @@
+package com.eov.cordova.watermeter;
+
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+
+/**
+ * Tamper-evident local history of readings
+ * Records go to append-only binary segment files. Each record stores HMAC-SHA256, under a key
+ * the log files do not contain, over the previous record's MAC and its own bytes, so editing or
+ * dropping a record breaks the chain and the chain cannot be recomputed from the files alone.
+ * A MACed checkpoint of the record count and head MAC catches a truncated tail or deleted newest
+ * segment. Segments roll over by size and age; sealed segments are memory-mapped for queries and
+ * get a fixed-width index file, so opening a log with 100k+ records does not rescan them.
+ */
+final class AuditLog {
+
+    private static final String TAG = "WaterMeterAudit";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".wml";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final int MAGIC = 0x574D414C; // "WMAL"
+    private static final byte VERSION = 2;
+    // magic, version, createdAt, firstSeq, key id, MAC of the last record of the previous segment
+    private static final int HEADER_BYTES = 4 + 1 + 8 + 8 + 8 + 32;
+    private static final int HASH_BYTES = 32;
+    private static final String CHECKPOINT_FILE = "head.chk";
+    // Two alternating slots of: records, resetAt, head MAC, slot MAC
+    private static final int CHECKPOINT_SLOT_BYTES = 8 + 8 + HASH_BYTES + HASH_BYTES;
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    // timestamp, record offset, meterId hash
+    private static final int INDEX_ENTRY_BYTES = 8 + 4 + 4;
+    private static final int MAX_STRING_BYTES = 0xffff;
+    static final long DEFAULT_MAX_SEGMENT_BYTES = 4L * 1024 * 1024;
+    // Record offsets are stored as int
+    private static final long MAX_SEGMENT_BYTES_LIMIT = 256L * 1024 * 1024;
+    static final long DEFAULT_MAX_SEGMENT_AGE_MS = 24L * 60 * 60 * 1000;
+    static final int DEFAULT_QUERY_LIMIT = 100;
+
+    static final byte SOURCE_RECOGNIZE = 0;
+    static final byte SOURCE_SCAN = 1;
+    static final byte SOURCE_CONSENSUS = 2;
+    private static final String[] SOURCE_NAMES = {"recognize", "scan", "consensus"};
+    private static final byte FLAG_RELIABLE = 1;
+    private static final byte FLAG_CACHED = 2;
+
+    /**
+     * Supplies the chain key; called once, on the thread that first opens the log
+     */
+    interface KeySource {
+        SecretKey load() throws Exception;
+    }
+
+    // Stage timings kept per record, in this order; NaN when a stage was not measured
+    private static final String[] STAGES = {
+        RecognitionMetrics.STAGE_DECODE, RecognitionMetrics.STAGE_ACQUIRE, RecognitionMetrics.STAGE_SET_INPUT,
+        RecognitionMetrics.STAGE_INFERENCE, RecognitionMetrics.STAGE_EXTRACT, RecognitionMetrics.STAGE_TOTAL
+    };
+
+    /**
+     * One reading to record
+     */
+    static final class Entry {
+        final long timestamp = System.currentTimeMillis();
+        final byte source;
+        final String text;
+        final String reading;
+        final float confidence;
+        final boolean reliable;
+        final boolean cached;
+        final String meterId;
+        final String imagePath;
+        final float[] stageMs = new float[STAGES.length];
+
+        Entry(byte source, JSONObject result, JSONObject timings, String meterId, String imagePath) {
+            this.source = source;
+            this.text = result.optString("text", "");
+            this.reading = result.optString("reading", "");
+            this.confidence = (float) result.optDouble("confidence", 0);
+            this.reliable = result.optBoolean("isReliable", false);
+            this.cached = result.optBoolean("cached", false);
+            this.meterId = meterId;
+            this.imagePath = imagePath;
+            for (int i = 0; i < STAGES.length; i++) {
+                stageMs[i] = timings != null ? (float) timings.optDouble(STAGES[i] + "Ms", Double.NaN) : Float.NaN;
+            }
+        }
+    }
+
+    /**
+     * Query filter: [from, to] timestamps and an optional meter
+     */
+    static final class Filter {
+        final long from;
+        final long to;
+        final String meterId;
+
+        Filter(JSONObject options) {
+            JSONObject opts = options != null ? options : new JSONObject();
+            from = opts.optLong("from", 0);
+            to = opts.optLong("to", Long.MAX_VALUE);
+            String meter = opts.optString("meterId", "");
+            meterId = meter.isEmpty() ? null : meter;
+        }
+
+        boolean matchesTime(long timestamp) {
+            return timestamp >= from && timestamp <= to;
+        }
+    }
+
+    /**
+     * A segment file with its in-memory index
+     */
+    private static final class Segment {
+        final int number;
+        final File file;
+        final long createdAt;
+        final long firstSeq;
+        final long keyId;
+        final byte[] previousHash;
+        long[] timestamps = new long[64];
+        int[] offsets = new int[64];
+        int[] meterHashes = new int[64];
+        int count;
+        long minTimestamp = Long.MAX_VALUE;
+        long maxTimestamp = Long.MIN_VALUE;
+        long size;
+        byte[] lastHash;
+        MappedByteBuffer map;    // sealed segments only
+
+        Segment(int number, File file, long createdAt, long firstSeq, long keyId, byte[] previousHash) {
+            this.number = number;
+            this.file = file;
+            this.createdAt = createdAt;
+            this.firstSeq = firstSeq;
+            this.keyId = keyId;
+            this.previousHash = previousHash;
+            this.lastHash = previousHash;
+        }
+
+        void add(long timestamp, int offset, int meterHash) {
+            if (count == timestamps.length) {
+                int capacity = count * 2;
+                timestamps = Arrays.copyOf(timestamps, capacity);
+                offsets = Arrays.copyOf(offsets, capacity);
+                meterHashes = Arrays.copyOf(meterHashes, capacity);
+            }
+            timestamps[count] = timestamp;
+            offsets[count] = offset;
+            meterHashes[count] = meterHash;
+            count++;
+            minTimestamp = Math.min(minTimestamp, timestamp);
+            maxTimestamp = Math.max(maxTimestamp, timestamp);
+        }
+
+        boolean overlaps(Filter filter) {
+            return count > 0 && maxTimestamp >= filter.from && minTimestamp <= filter.to;
+        }
+    }
+
+    private final File directory;
+    private final KeySource keySource;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor();
+    private final List<Segment> segments = new ArrayList<>();
+    private final ByteArrayOutputStream payloadBuffer = new ByteArrayOutputStream(256);
+    private volatile boolean enabled = true;
+    private long maxSegmentBytes = DEFAULT_MAX_SEGMENT_BYTES;
+    private long maxSegmentAgeMs = DEFAULT_MAX_SEGMENT_AGE_MS;
+    private boolean opened;
+    private RandomAccessFile activeFile;
+    private int nextSegmentNumber;
+    private long nextSeq;
+    private int appendErrors;
+    private Mac mac;
+    private long keyId;
+    private RandomAccessFile checkpointFile;
+    private long checkpointRecords;
+    // Record count at which the log was first found inconsistent with its checkpoint, -1 if never
+    private long resetAt = -1;
+
+    AuditLog(File directory, KeySource keySource) {
+        this.directory = directory;
+        this.keySource = keySource;
+    }
+
+    /**
+     * Apply options: enabled, maxSegmentBytes, maxSegmentAgeMs
+     */
+    synchronized void configure(JSONObject options) {
+        enabled = options.optBoolean("enabled", enabled);
+        maxSegmentBytes = Math.max(64 * 1024, Math.min(MAX_SEGMENT_BYTES_LIMIT,
+            options.optLong("maxSegmentBytes", maxSegmentBytes)));
+        maxSegmentAgeMs = Math.max(60000, options.optLong("maxSegmentAgeMs", maxSegmentAgeMs));
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queue a record; the write and fsync happen on the log's own thread
+     */
+    void appendAsync(Entry entry) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            writer.execute(() -> {
+                try {
+                    append(entry);
+                } catch (Exception e) {
+                    synchronized (this) {
+                        appendErrors++;
+                    }
+                    Log.e(TAG, "Failed to append audit record", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Closed while the plugin is shutting down
+            Log.w(TAG, "Audit record dropped, log is closed");
+        }
+    }
+
+    synchronized void append(Entry entry) throws IOException {
+        ensureOpen();
+        Segment active = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (active == null || active.map != null || active.size >= maxSegmentBytes
+                || (active.count > 0 && entry.timestamp - active.createdAt >= maxSegmentAgeMs)) {
+            active = rollOver(active, entry.timestamp);
+        }
+
+        byte[] payload = encode(nextSeq, entry);
+        byte[] hash = chainHash(active.lastHash, payload, 0, payload.length);
+        ByteBuffer record = ByteBuffer.allocate(4 + payload.length + HASH_BYTES);
+        record.putInt(payload.length).put(payload).put(hash);
+        record.flip();
+
+        FileChannel channel = activeFile.getChannel();
+        long offset = active.size;
+        while (record.hasRemaining()) {
+            channel.write(record, offset + record.position());
+        }
+        channel.force(false);
+
+        active.size = offset + record.limit();
+        active.lastHash = hash;
+        active.add(entry.timestamp, (int) offset, meterHash(entry.meterId));
+        nextSeq++;
+        writeCheckpoint(nextSeq, hash);
+    }
+
+    /**
+     * Matching records, newest first
+     */
+    synchronized JSONObject query(JSONObject options) throws IOException, JSONException {
+        ensureOpen();
+        Filter filter = new Filter(options);
+        int limit = options != null ? Math.max(1, options.optInt("limit", DEFAULT_QUERY_LIMIT)) : DEFAULT_QUERY_LIMIT;
+        int wantedHash = meterHash(filter.meterId);
+
+        JSONArray entries = new JSONArray();
+        boolean more = false;
+        for (int s = segments.size() - 1; s >= 0 && !more; s--) {
+            Segment segment = segments.get(s);
+            if (!segment.overlaps(filter)) {
+                continue;
+            }
+            for (int i = segment.count - 1; i >= 0; i--) {
+                if (!filter.matchesTime(segment.timestamps[i])
+                        || (filter.meterId != null && segment.meterHashes[i] != wantedHash)) {
+                    continue;
+                }
+                JSONObject entry = toJson(readRecord(segment, segment.offsets[i]));
+                if (filter.meterId != null && !filter.meterId.equals(entry.optString("meterId"))) {
+                    continue;
+                }
+                if (entries.length() == limit) {
+                    more = true;
+                    break;
+                }
+                entries.put(entry);
+            }
+        }
+
+        JSONObject result = new JSONObject();
+        result.put("entries", entries);
+        result.put("hasMore", more);
+        result.put("totalRecords", nextSeq);
+        result.put("headHash", toHex(headHash()));
+        return result;
+    }
+
+    /**
+     * Write matching records, oldest first, as NDJSON
+     */
+    synchronized JSONObject export(JSONObject options, File output) throws IOException, JSONException {
+        ensureOpen();
+        Filter filter = new Filter(options);
+        int wantedHash = meterHash(filter.meterId);
+        long count = 0;
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(output), UTF8))) {
+            for (Segment segment : segments) {
+                if (!segment.overlaps(filter)) {
+                    continue;
+                }
+                for (int i = 0; i < segment.count; i++) {
+                    if (!filter.matchesTime(segment.timestamps[i])
+                            || (filter.meterId != null && segment.meterHashes[i] != wantedHash)) {
+                        continue;
+                    }
+                    JSONObject entry = toJson(readRecord(segment, segment.offsets[i]));
+                    if (filter.meterId != null && !filter.meterId.equals(entry.optString("meterId"))) {
+                        continue;
+                    }
+                    out.write(entry.toString());
+                    out.write('\n');
+                    count++;
+                }
+            }
+        }
+
+        JSONObject result = new JSONObject();
+        result.put("path", output.getAbsolutePath());
+        result.put("count", count);
+        result.put("bytes", output.length());
+        result.put("headHash", toHex(headHash()));
+        return result;
+    }
+
+    /**
+     * Recompute the whole MAC chain and compare it with the checkpoint; reports the first problem found
+     * Reasons: key (segment written under another key), segmentLink, sequence, hash, and
+     * checkpoint (records were removed from the end, or the checkpoint itself was deleted or replaced)
+     */
+    synchronized JSONObject verify() throws IOException, JSONException {
+        ensureOpen();
+        byte[] expectedPrevious = new byte[HASH_BYTES];
+        long expectedSeq = 0;
+        long records = 0;
+        JSONObject result = new JSONObject();
+        for (Segment segment : segments) {
+            if (segment.keyId != keyId) {
+                return broken(result, segment.file.getName(), expectedSeq, "key", records);
+            }
+            if (!Arrays.equals(segment.previousHash, expectedPrevious) || segment.firstSeq != expectedSeq) {
+                return broken(result, segment.file.getName(), expectedSeq, "segmentLink", records);
+            }
+            byte[] previous = segment.previousHash;
+            for (int i = 0; i < segment.count; i++) {
+                ByteBuffer record = readRecord(segment, segment.offsets[i]);
+                int length = record.limit() - HASH_BYTES;
+                byte[] payload = new byte[length];
+                byte[] stored = new byte[HASH_BYTES];
+                record.get(payload).get(stored);
+                if (ByteBuffer.wrap(payload).getLong() != expectedSeq) {
+                    return broken(result, segment.file.getName(), expectedSeq, "sequence", records);
+                }
+                byte[] hash = chainHash(previous, payload, 0, length);
+                if (!Arrays.equals(hash, stored)) {
+                    return broken(result, segment.file.getName(), expectedSeq, "hash", records);
+                }
+                previous = hash;
+                expectedSeq++;
+                records++;
+            }
+            expectedPrevious = previous;
+        }
+        if (resetAt >= 0) {
+            return broken(result, CHECKPOINT_FILE, resetAt, "checkpoint", records);
+        }
+        if (records != checkpointRecords || !Arrays.equals(expectedPrevious, readCheckpointHead())) {
+            // Changed underneath the running log
+            return broken(result, CHECKPOINT_FILE, Math.min(records, checkpointRecords), "checkpoint", records);
+        }
+        result.put("valid", true);
+        result.put("records", records);
+        result.put("segments", segments.size());
+        result.put("headHash", toHex(expectedPrevious));
+        return result;
+    }
+
+    synchronized JSONObject stats() throws IOException, JSONException {
+        ensureOpen();
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += segment.size;
+        }
+        JSONObject result = new JSONObject();
+        result.put("enabled", enabled);
+        result.put("records", nextSeq);
+        result.put("segments", segments.size());
+        result.put("bytes", bytes);
+        result.put("maxSegmentBytes", maxSegmentBytes);
+        result.put("maxSegmentAgeMs", maxSegmentAgeMs);
+        result.put("appendErrors", appendErrors);
+        result.put("headHash", toHex(headHash()));
+        return result;
+    }
+
+    /**
+     * Close the files once every queued record is written; runs on the writer thread so it
+     * cannot overtake an append, and does not block the caller
+     */
+    void close() {
+        try {
+            writer.execute(this::closeFiles);
+        } catch (RejectedExecutionException e) {
+            // Already closed
+            return;
+        }
+        writer.shutdown();
+    }
+
+    /**
+     * Wait for close() to finish on the writer thread
+     */
+    boolean awaitClosed(long timeout, TimeUnit unit) throws InterruptedException {
+        return writer.awaitTermination(timeout, unit);
+    }
+
+    private synchronized void closeFiles() {
+        try {
+            if (activeFile != null) {
+                activeFile.close();
+            }
+            if (checkpointFile != null) {
+                checkpointFile.close();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Error closing audit log: " + e.getMessage());
+        }
+        activeFile = null;
+        checkpointFile = null;
+        segments.clear();
+        opened = false;
+    }
+
+    private JSONObject broken(JSONObject result, String file, long seq, String reason, long records) throws JSONException {
+        result.put("valid", false);
+        result.put("records", records);
+        result.put("segments", segments.size());
+        JSONObject brokenAt = new JSONObject();
+        brokenAt.put("segment", file);
+        brokenAt.put("seq", seq);
+        brokenAt.put("reason", reason);
+        result.put("brokenAt", brokenAt);
+        return result;
+    }
+
+    private byte[] headHash() {
+        return segments.isEmpty() ? new byte[HASH_BYTES] : segments.get(segments.size() - 1).lastHash;
+    }
+
+    /**
+     * Load every segment: sealed ones from their index files, the active one by scanning it
+     */
+    private void ensureOpen() throws IOException {
+        if (opened) {
+            return;
+        }
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Cannot create audit log dir: " + directory);
+        }
+        if (mac == null) {
+            openMac();
+        }
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files == null) {
+            files = new File[0];
+        }
+        Arrays.sort(files);
+
+        for (int i = 0; i < files.length; i++) {
+            boolean last = i == files.length - 1;
+            nextSegmentNumber = Math.max(nextSegmentNumber, segmentNumber(files[i]) + 1);
+            Segment segment = readHeader(files[i]);
+            if (segment == null) {
+                // Left untouched for inspection; new segments get higher numbers
+                Log.w(TAG, "Skipping audit segment with bad header: " + files[i].getName());
+                continue;
+            }
+            File index = indexFile(segment);
+            if (!last && index.length() > 0 && loadIndex(segment, index)) {
+                mapSealed(segment);
+            } else {
+                scan(segment, last);
+                if (!last) {
+                    writeIndex(segment);
+                    mapSealed(segment);
+                }
+            }
+            segments.add(segment);
+        }
+
+        if (!segments.isEmpty()) {
+            Segment active = segments.get(segments.size() - 1);
+            if (active.map == null) {
+                activeFile = new RandomAccessFile(active.file, "rw");
+            }
+            nextSeq = active.firstSeq + active.count;
+        }
+        openCheckpoint();
+        opened = true;
+        Log.d(TAG, "Audit log opened: segments=" + segments.size() + ", records=" + nextSeq);
+    }
+
+    /**
+     * Seal the current segment and start a new one chained to its last hash
+     */
+    private Segment rollOver(Segment current, long now) throws IOException {
+        byte[] previousHash = new byte[HASH_BYTES];
+        if (current != null) {
+            if (current.map == null) {
+                activeFile.close();
+                activeFile = null;
+                writeIndex(current);
+                mapSealed(current);
+            }
+            previousHash = current.lastHash;
+        }
+
+        int number = nextSegmentNumber++;
+        File file = new File(directory, String.format(Locale.US, "%s%08d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+        Segment segment = new Segment(number, file, now, nextSeq, keyId, previousHash);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).put(VERSION).putLong(now).putLong(nextSeq).putLong(keyId).put(previousHash);
+        header.flip();
+        activeFile = new RandomAccessFile(file, "rw");
+        activeFile.setLength(0);
+        FileChannel channel = activeFile.getChannel();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+        channel.force(true);
+        segment.size = HEADER_BYTES;
+        segments.add(segment);
+        Log.i(TAG, "Started audit segment " + file.getName());
+        return segment;
+    }
+
+    private Segment readHeader(File file) throws IOException {
+        if (file.length() < HEADER_BYTES) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                return null;
+            }
+            long createdAt = in.readLong();
+            long firstSeq = in.readLong();
+            long segmentKeyId = in.readLong();
+            byte[] previousHash = new byte[HASH_BYTES];
+            in.readFully(previousHash);
+            int number = segmentNumber(file);
+            return number >= 0 ? new Segment(number, file, createdAt, firstSeq, segmentKeyId, previousHash) : null;
+        }
+    }
+
+    private static int segmentNumber(File file) {
+        String name = file.getName();
+        try {
+            return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Rebuild a segment's index from its records; a torn record at the end of the active segment is cut off
+     */
+    private void scan(Segment segment, boolean active) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(segment.file, active ? "rw" : "r")) {
+            FileChannel channel = file.getChannel();
+            long size = channel.size();
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int offset = HEADER_BYTES;
+            while (offset + 4 <= size) {
+                int length = map.getInt(offset);
+                long end = (long) offset + 4 + length + HASH_BYTES;
+                if (length < 0 || end > size) {
+                    break;
+                }
+                ByteBuffer record = map.duplicate();
+                record.position(offset + 4);
+                long timestamp = record.getLong(offset + 4 + 8);
+                String meterId = readMeterId(record);
+                byte[] hash = new byte[HASH_BYTES];
+                record.position((int) end - HASH_BYTES);
+                record.get(hash);
+                segment.add(timestamp, offset, meterHash(meterId));
+                segment.lastHash = hash;
+                offset = (int) end;
+            }
+            if (offset < size) {
+                if (active) {
+                    Log.w(TAG, "Truncating torn audit record in " + segment.file.getName() + " at " + offset);
+                    channel.truncate(offset);
+                } else {
+                    Log.w(TAG, "Trailing bytes in sealed audit segment " + segment.file.getName());
+                }
+            }
+            segment.size = offset;
+        }
+    }
+
+    private boolean loadIndex(Segment segment, File index) throws IOException {
+        if (index.length() % INDEX_ENTRY_BYTES != 0) {
+            return false;
+        }
+        int count = (int) (index.length() / INDEX_ENTRY_BYTES);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(index)))) {
+            for (int i = 0; i < count; i++) {
+                segment.add(in.readLong(), in.readInt(), in.readInt());
+            }
+        }
+        segment.size = segment.file.length();
+        if (count > 0) {
+            byte[] hash = new byte[HASH_BYTES];
+            try (RandomAccessFile file = new RandomAccessFile(segment.file, "r")) {
+                file.seek(segment.size - HASH_BYTES);
+                file.readFully(hash);
+            }
+            segment.lastHash = hash;
+        }
+        return true;
+    }
+
+    private void writeIndex(Segment segment) throws IOException {
+        File index = indexFile(segment);
+        File temp = new File(index.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            for (int i = 0; i < segment.count; i++) {
+                out.writeLong(segment.timestamps[i]);
+                out.writeInt(segment.offsets[i]);
+                out.writeInt(segment.meterHashes[i]);
+            }
+        }
+        if (!temp.renameTo(index)) {
+            temp.delete();
+            throw new IOException("Failed to write audit index: " + index.getPath());
+        }
+    }
+
+    private void mapSealed(Segment segment) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(segment.file, "r")) {
+            segment.map = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, segment.size);
+        }
+    }
+
+    private File indexFile(Segment segment) {
+        String name = segment.file.getName();
+        return new File(directory, name.substring(0, name.length() - SEGMENT_SUFFIX.length()) + INDEX_SUFFIX);
+    }
+
+    /**
+     * Payload and hash of one record, positioned at the payload
+     */
+    private ByteBuffer readRecord(Segment segment, int offset) throws IOException {
+        if (segment.map != null) {
+            ByteBuffer record = segment.map.duplicate();
+            int length = record.getInt(offset);
+            record.position(offset + 4);
+            record.limit(offset + 4 + length + HASH_BYTES);
+            return record.slice();
+        }
+        FileChannel channel = activeFile.getChannel();
+        ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+        readFully(channel, lengthBuffer, offset);
+        ByteBuffer record = ByteBuffer.allocate(lengthBuffer.getInt(0) + HASH_BYTES);
+        readFully(channel, record, offset + 4);
+        record.flip();
+        return record;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of audit segment");
+            }
+        }
+    }
+
+    private byte[] encode(long seq, Entry entry) throws IOException {
+        payloadBuffer.reset();
+        DataOutputStream out = new DataOutputStream(payloadBuffer);
+        out.writeLong(seq);
+        out.writeLong(entry.timestamp);
+        out.writeByte(entry.source);
+        out.writeByte((entry.reliable ? FLAG_RELIABLE : 0) | (entry.cached ? FLAG_CACHED : 0));
+        out.writeFloat(entry.confidence);
+        for (float ms : entry.stageMs) {
+            out.writeFloat(ms);
+        }
+        writeString(out, entry.meterId);
+        writeString(out, entry.text);
+        writeString(out, entry.reading);
+        writeString(out, entry.imagePath);
+        out.flush();
+        return payloadBuffer.toByteArray();
+    }
+
+    private static JSONObject toJson(ByteBuffer record) throws JSONException {
+        int payloadLength = record.limit() - HASH_BYTES;
+        JSONObject json = new JSONObject();
+        json.put("seq", record.getLong());
+        json.put("timestamp", record.getLong());
+        int source = record.get();
+        json.put("source", source >= 0 && source < SOURCE_NAMES.length ? SOURCE_NAMES[source] : String.valueOf(source));
+        int flags = record.get();
+        json.put("isReliable", (flags & FLAG_RELIABLE) != 0);
+        if ((flags & FLAG_CACHED) != 0) {
+            json.put("cached", true);
+        }
+        json.put("confidence", record.getFloat());
+        JSONObject timings = new JSONObject();
+        for (String stage : STAGES) {
+            float ms = record.getFloat();
+            if (!Float.isNaN(ms)) {
+                timings.put(stage + "Ms", ms);
+            }
+        }
+        String meterId = readString(record);
+        if (meterId != null) {
+            json.put("meterId", meterId);
+        }
+        json.put("text", readString(record));
+        json.put("reading", readString(record));
+        String imagePath = readString(record);
+        if (imagePath != null) {
+            json.put("imagePath", imagePath);
+        }
+        if (timings.length() > 0) {
+            json.put("timings", timings);
+        }
+        byte[] hash = new byte[HASH_BYTES];
+        record.position(payloadLength);
+        record.get(hash);
+        json.put("hash", toHex(hash));
+        return json;
+    }
+
+    /**
+     * meterId of a record, read from a buffer positioned at its payload
+     */
+    private static String readMeterId(ByteBuffer record) {
+        record.position(record.position() + 8 + 8 + 1 + 1 + 4 + 4 * STAGES.length);
+        return readString(record);
+    }
+
+    // Strings are an unsigned 16-bit byte length (0xffff = null) followed by UTF-8
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeShort(MAX_STRING_BYTES);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF8);
+        int length = Math.min(bytes.length, MAX_STRING_BYTES - 1);
+        out.writeShort(length);
+        out.write(bytes, 0, length);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xffff;
+        if (length == MAX_STRING_BYTES) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    private static int meterHash(String meterId) {
+        return meterId != null ? meterId.hashCode() : 0;
+    }
+
+    private byte[] chainHash(byte[] previous, byte[] payload, int offset, int length) {
+        mac.update(previous);
+        mac.update(payload, offset, length);
+        return mac.doFinal();
+    }
+
+    private void openMac() throws IOException {
+        try {
+            Mac keyed = Mac.getInstance(MAC_ALGORITHM);
+            keyed.init(keySource.load());
+            // Stored in segment headers so records written under a replaced key are reported
+            keyId = ByteBuffer.wrap(keyed.doFinal("watermeter-audit-key-id".getBytes(UTF8))).getLong();
+            mac = keyed;
+        } catch (Exception e) {
+            throw new IOException("Audit log key unavailable: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Load the checkpoint and reconcile it with the segments just opened
+     * A missing or unreadable checkpoint, fewer records than it counts, or a different MAC at its
+     * head means records were removed; that is kept in resetAt, which every later checkpoint carries
+     */
+    private void openCheckpoint() throws IOException {
+        File file = new File(directory, CHECKPOINT_FILE);
+        long length = file.length();
+        checkpointFile = new RandomAccessFile(file, "rw");
+        long records = -1;
+        byte[] head = null;
+        long slotResetAt = -1;
+        for (int slot = 0; slot < 2 && length >= (slot + 1L) * CHECKPOINT_SLOT_BYTES; slot++) {
+            ByteBuffer buffer = ByteBuffer.allocate(CHECKPOINT_SLOT_BYTES);
+            readFully(checkpointFile.getChannel(), buffer, (long) slot * CHECKPOINT_SLOT_BYTES);
+            buffer.flip();
+            long slotRecords = buffer.getLong();
+            long slotReset = buffer.getLong();
+            byte[] slotHead = new byte[HASH_BYTES];
+            byte[] stored = new byte[HASH_BYTES];
+            buffer.get(slotHead).get(stored);
+            if (Arrays.equals(stored, checkpointMac(slotRecords, slotReset, slotHead)) && slotRecords > records) {
+                records = slotRecords;
+                head = slotHead;
+                slotResetAt = slotReset;
+            }
+        }
+        resetAt = slotResetAt;
+
+        long found = -1;
+        if (records < 0) {
+            if (nextSeq > 0) {
+                found = 0;
+            }
+        } else if (records > nextSeq || (records > 0 && !Arrays.equals(head, storedHash(records - 1)))) {
+            found = Math.min(records, nextSeq);
+        }
+        if (found >= 0 && resetAt < 0) {
+            resetAt = found;
+            Log.w(TAG, "Audit log does not match its checkpoint (" + records + " checkpointed, "
+                + nextSeq + " found)");
+        }
+        writeCheckpoint(nextSeq, headHash());
+    }
+
+    private void writeCheckpoint(long records, byte[] head) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(CHECKPOINT_SLOT_BYTES);
+        buffer.putLong(records).putLong(resetAt).put(head).put(checkpointMac(records, resetAt, head));
+        buffer.flip();
+        FileChannel channel = checkpointFile.getChannel();
+        // Alternate slots so a torn write leaves the previous checkpoint intact
+        long position = (records % 2) * CHECKPOINT_SLOT_BYTES;
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+        channel.force(false);
+        checkpointRecords = records;
+    }
+
+    private byte[] readCheckpointHead() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HASH_BYTES);
+        readFully(checkpointFile.getChannel(), buffer, (checkpointRecords % 2) * CHECKPOINT_SLOT_BYTES + 16);
+        return buffer.array();
+    }
+
+    private byte[] checkpointMac(long records, long reset, byte[] head) {
+        mac.update((byte) 'C');
+        mac.update(ByteBuffer.allocate(16).putLong(records).putLong(reset).array());
+        mac.update(head);
+        return mac.doFinal();
+    }
+
+    /**
+     * MAC stored with record seq, as written; the chain itself is checked by verify()
+     */
+    private byte[] storedHash(long seq) throws IOException {
+        for (Segment segment : segments) {
+            if (seq >= segment.firstSeq && seq < segment.firstSeq + segment.count) {
+                ByteBuffer record = readRecord(segment, segment.offsets[(int) (seq - segment.firstSeq)]);
+                byte[] hash = new byte[HASH_BYTES];
+                record.position(record.limit() - HASH_BYTES);
+                record.get(hash);
+                return hash;
+            }
+        }
+        return null;
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+}
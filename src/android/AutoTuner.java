@@ -0,0 +1,157 @@
+package com.eov.cordova.watermeter;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.eov.watermeter.ocr.Predictor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * On-device predictor tuning
+ * Times a handful of thread count / power mode / backend combinations on the actual device and
+ * stores the fastest per device model, so later pool creations start with it.
+ */
+final class AutoTuner {
+
+    private static final String TAG = "WaterMeterTuner";
+    private static final String PREFS_NAME = "watermeter_tuning";
+    static final int DEFAULT_ITERATIONS = 3;
+    private static final String[] CANDIDATE_POWER_MODES = {"LITE_POWER_HIGH", "LITE_POWER_NO_BIND"};
+    private static final int[] CANDIDATE_THREADS = {1, 2, 4, 6, 8};
+
+    private final SharedPreferences prefs;
+
+    AutoTuner(Context context) {
+        this.prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Profiles are per device model, OS level, model files and pool size
+     */
+    static String profileKey(String modelTag, int poolSize) {
+        return Build.MANUFACTURER + "|" + Build.MODEL + "|" + Build.VERSION.SDK_INT + "|" + modelTag + "|" + poolSize;
+    }
+
+    JSONObject load(String key) {
+        String json = prefs.getString(key, null);
+        if (json == null) {
+            return null;
+        }
+        try {
+            return new JSONObject(json);
+        } catch (JSONException e) {
+            Log.w(TAG, "Dropping unreadable tuning profile");
+            prefs.edit().remove(key).apply();
+            return null;
+        }
+    }
+
+    void save(String key, JSONObject profile) {
+        prefs.edit().putString(key, profile.toString()).apply();
+    }
+
+    /**
+     * Time every candidate and return the profile of the fastest one
+     * Threads are capped at cores / poolSize so a full pool does not oversubscribe the CPU
+     */
+    JSONObject tune(PredictorPool pool, Bitmap input, int iterations, boolean includeGpu) throws JSONException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int poolSize = pool.getMaxSize();
+        int maxThreads = Math.max(1, cores / poolSize);
+
+        Set<Integer> threadCounts = new LinkedHashSet<>();
+        for (int threads : CANDIDATE_THREADS) {
+            if (threads <= maxThreads) {
+                threadCounts.add(threads);
+            }
+        }
+        threadCounts.add(maxThreads);
+
+        List<Object[]> candidates = new ArrayList<>();
+        for (String mode : CANDIDATE_POWER_MODES) {
+            for (int threads : threadCounts) {
+                candidates.add(new Object[] {threads, mode, false});
+            }
+        }
+        if (includeGpu) {
+            candidates.add(new Object[] {maxThreads, PredictorPool.DEFAULT_POWER_MODE, true});
+        }
+
+        JSONArray results = new JSONArray();
+        JSONObject best = null;
+        long startTime = System.currentTimeMillis();
+        for (Object[] candidate : candidates) {
+            JSONObject result = measure(pool, input, (Integer) candidate[0], (String) candidate[1],
+                (Boolean) candidate[2], Math.max(1, iterations));
+            results.put(result);
+            if (result.has("latencyMs") && (best == null || result.getDouble("latencyMs") < best.getDouble("latencyMs"))) {
+                best = result;
+            }
+        }
+        if (best == null) {
+            throw new IllegalStateException("No predictor configuration could be loaded");
+        }
+
+        JSONObject profile = new JSONObject();
+        profile.put("cpuThreads", best.getInt("cpuThreads"));
+        profile.put("powerMode", best.getString("powerMode"));
+        profile.put("useGPU", best.getBoolean("useGPU"));
+        profile.put("latencyMs", best.getDouble("latencyMs"));
+        profile.put("device", Build.MANUFACTURER + " " + Build.MODEL);
+        profile.put("cores", cores);
+        profile.put("poolSize", poolSize);
+        profile.put("tunedAt", System.currentTimeMillis());
+        profile.put("durationMs", System.currentTimeMillis() - startTime);
+        profile.put("candidates", results);
+        Log.i(TAG, "Tuned: threads=" + best.getInt("cpuThreads") + ", powerMode=" + best.getString("powerMode")
+            + ", gpu=" + best.getBoolean("useGPU") + ", ms=" + best.getDouble("latencyMs"));
+        return profile;
+    }
+
+    /**
+     * Median latency of one warm inference for a configuration, or the load error
+     */
+    private JSONObject measure(PredictorPool pool, Bitmap input, int threads, String mode, boolean gpu, int iterations)
+            throws JSONException {
+        JSONObject result = new JSONObject();
+        result.put("cpuThreads", threads);
+        result.put("powerMode", mode);
+        result.put("useGPU", gpu);
+        Predictor predictor = null;
+        try {
+            predictor = pool.loadStandalone(threads, mode, gpu);
+            predictor.setInputImage(input);
+            predictor.runModel(1, 1, 1); // first run pays for kernel setup, not counted
+
+            double[] samples = new double[iterations];
+            for (int i = 0; i < iterations; i++) {
+                long start = System.nanoTime();
+                predictor.setInputImage(input);
+                predictor.runModel(1, 1, 1);
+                samples[i] = (System.nanoTime() - start) / 1000000.0;
+            }
+            Arrays.sort(samples);
+            result.put("latencyMs", Math.round(samples[iterations / 2] * 100) / 100.0);
+        } catch (Exception e) {
+            Log.w(TAG, "Candidate threads=" + threads + ", mode=" + mode + ", gpu=" + gpu + " failed: " + e.getMessage());
+            result.put("error", e.getMessage() != null ? e.getMessage() : e.toString());
+        } finally {
+            if (predictor != null) {
+                predictor.releaseModel();
+            }
+        }
+        return result;
+    }
+}
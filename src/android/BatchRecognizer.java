@@ -0,0 +1,183 @@
+package com.eov.cordova.watermeter;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import org.apache.cordova.CallbackContext;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Batch recognition pipeline
+ * Decodes upcoming images on a bounded worker pool while the current one runs through OCR,
+ * so the predictor never waits on BitmapFactory between items.
+ */
+class BatchRecognizer {
+
+    private static final String TAG = "WaterMeterBatch";
+    static final int DEFAULT_CONCURRENCY = 2;
+    static final int MAX_CONCURRENCY = 8;
+
+    /**
+     * Decode, inference and bitmap release supplied by the plugin
+     */
+    interface Engine {
+        Bitmap decode(String path) throws Exception;
+
+        JSONObject recognize(String path, Bitmap bitmap, RecognitionMetrics.Timings timings) throws Exception;
+
+        void release(Bitmap bitmap);
+    }
+
+    /**
+     * Decoded bitmap with the time its decode took on the worker
+     */
+    private static final class Decoded {
+        final Bitmap bitmap;
+        final long nanos;
+
+        Decoded(Bitmap bitmap, long nanos) {
+            this.bitmap = bitmap;
+            this.nanos = nanos;
+        }
+    }
+
+    private final Engine engine;
+    private final int concurrency;
+    private final boolean includeResults;
+
+    BatchRecognizer(Engine engine, JSONObject options) {
+        this.engine = engine;
+        int requested = options.optInt("concurrency", DEFAULT_CONCURRENCY);
+        int cores = Runtime.getRuntime().availableProcessors();
+        this.concurrency = Math.max(1, Math.min(requested, Math.min(MAX_CONCURRENCY, cores)));
+        this.includeResults = options.optBoolean("includeResults", true);
+    }
+
+    /**
+     * Run the batch on the calling thread, streaming progress events to the callback
+     * Cancelling the job stops before the next item; the summary then carries cancelled: true
+     */
+    void run(JSONArray paths, RecognitionScheduler.Job job, CallbackContext callbackContext) throws JSONException {
+        int total = paths.length();
+        long startTime = System.currentTimeMillis();
+        int succeeded = 0;
+        int failed = 0;
+        int completed = 0;
+        JSONArray results = new JSONArray();
+
+        // Decode window: at most `concurrency` decoded bitmaps are held ahead of inference
+        ExecutorService decoder = Executors.newFixedThreadPool(concurrency);
+        List<Future<Decoded>> pending = new ArrayList<>(total);
+        try {
+            for (int i = 0; i < Math.min(concurrency, total); i++) {
+                pending.add(submitDecode(decoder, paths.getString(i)));
+            }
+
+            for (int i = 0; i < total && !job.isCancelled(); i++) {
+                String path = paths.getString(i);
+                if (i + concurrency < total) {
+                    pending.add(submitDecode(decoder, paths.getString(i + concurrency)));
+                }
+
+                JSONObject item = new JSONObject();
+                item.put("index", i);
+                item.put("path", path);
+                try {
+                    Decoded decoded = awaitDecode(pending.get(i));
+                    pending.set(i, null);
+                    Bitmap bitmap = decoded.bitmap;
+                    if (bitmap == null) {
+                        throw new IllegalStateException("Failed to load image from: " + path);
+                    }
+                    RecognitionMetrics.Timings timings = new RecognitionMetrics.Timings();
+                    timings.add(RecognitionMetrics.STAGE_DECODE, decoded.nanos);
+                    try {
+                        item.put("result", engine.recognize(path, bitmap, timings));
+                    } finally {
+                        engine.release(bitmap);
+                    }
+                    succeeded++;
+                } catch (Exception e) {
+                    Log.e(TAG, "Batch item " + i + " failed", e);
+                    item.put("error", e.getMessage() != null ? e.getMessage() : e.toString());
+                    failed++;
+                }
+
+                if (includeResults) {
+                    results.put(item);
+                }
+
+                JSONObject progress = new JSONObject();
+                progress.put("type", "progress");
+                completed = i + 1;
+                progress.put("completed", completed);
+                progress.put("total", total);
+                progress.put("item", item);
+                WaterMeterPlugin.sendUpdate(callbackContext, progress);
+            }
+        } finally {
+            decoder.shutdownNow();
+            recycleRemaining(pending);
+        }
+
+        JSONObject summary = new JSONObject();
+        summary.put("type", "complete");
+        summary.put("jobId", job.id);
+        summary.put("total", total);
+        summary.put("completed", completed);
+        summary.put("cancelled", job.isCancelled());
+        summary.put("succeeded", succeeded);
+        summary.put("failed", failed);
+        summary.put("concurrency", concurrency);
+        summary.put("durationMs", System.currentTimeMillis() - startTime);
+        if (includeResults) {
+            summary.put("results", results);
+        }
+        Log.d(TAG, "Batch done: total=" + total + ", failed=" + failed + ", ms=" + summary.getLong("durationMs"));
+        callbackContext.success(summary);
+    }
+
+    private Future<Decoded> submitDecode(ExecutorService decoder, String path) {
+        return decoder.submit(() -> {
+            long start = System.nanoTime();
+            Bitmap bitmap = engine.decode(path);
+            return new Decoded(bitmap, System.nanoTime() - start);
+        });
+    }
+
+    private Decoded awaitDecode(Future<Decoded> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+
+    private void recycleRemaining(List<Future<Decoded>> pending) {
+        for (Future<Decoded> future : pending) {
+            if (future == null || future.isCancelled()) {
+                continue;
+            }
+            try {
+                if (future.isDone()) {
+                    Bitmap bitmap = future.get().bitmap;
+                    if (bitmap != null) {
+                        engine.release(bitmap);
+                    }
+                }
+            } catch (Exception ignored) {
+                // Decode failed or was interrupted; nothing to release
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.eov.cordova.watermeter;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Size-bucketed pool of mutable bitmaps for inBitmap decoding
+ * A decode reuses the smallest pooled bitmap whose allocation fits the output, so steady-state
+ * recognition stops allocating pixel memory. Buckets are keyed by allocation size; much larger
+ * bitmaps are not handed out so a full-resolution buffer is not pinned by a small image.
+ */
+final class BitmapPool {
+
+    private static final String TAG = "WaterMeterBitmapPool";
+    static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+    private static final int MAX_OVERSIZE = 4;
+
+    // Allocation byte count -> pooled bitmaps of that size, oldest first
+    private final TreeMap<Integer, Deque<Bitmap>> buckets = new TreeMap<>();
+    private long maxBytes;
+    private long currentBytes;
+    private int entries;
+    private long hits;
+    private long misses;
+    private long puts;
+    private long evictions;
+    private long bytesSaved;
+
+    BitmapPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Default budget: DEFAULT_MAX_BYTES, but no more than an eighth of the Java heap
+     */
+    static long defaultMaxBytes() {
+        return Math.min(DEFAULT_MAX_BYTES, Runtime.getRuntime().maxMemory() / 8);
+    }
+
+    static int bytesPerPixel(Bitmap.Config config) {
+        return config == Bitmap.Config.RGB_565 ? 2 : 4;
+    }
+
+    /**
+     * Pooled bitmap with room for width x height pixels of config, or null on miss
+     */
+    synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        long needed = (long) width * height * bytesPerPixel(config);
+        Map.Entry<Integer, Deque<Bitmap>> bucket = needed <= Integer.MAX_VALUE ? buckets.ceilingEntry((int) needed) : null;
+        if (bucket == null || bucket.getKey() > needed * MAX_OVERSIZE) {
+            misses++;
+            return null;
+        }
+        Bitmap bitmap = bucket.getValue().pollFirst();
+        if (bucket.getValue().isEmpty()) {
+            buckets.remove(bucket.getKey());
+        }
+        currentBytes -= bucket.getKey();
+        entries--;
+        hits++;
+        bytesSaved += needed;
+        return bitmap;
+    }
+
+    /**
+     * Hand a bitmap back for reuse; immutable or oversized bitmaps are recycled instead
+     */
+    void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        int size = bitmap.getAllocationByteCount();
+        synchronized (this) {
+            if (bitmap.isMutable() && size <= maxBytes) {
+                Deque<Bitmap> bucket = buckets.get(size);
+                if (bucket == null) {
+                    bucket = new ArrayDeque<>();
+                    buckets.put(size, bucket);
+                }
+                bucket.addLast(bitmap);
+                currentBytes += size;
+                entries++;
+                puts++;
+                trimToSize(maxBytes);
+                return;
+            }
+        }
+        bitmap.recycle();
+    }
+
+    /**
+     * Recycle pooled bitmaps, largest first, until at most limit bytes remain
+     */
+    synchronized void trimToSize(long limit) {
+        while (currentBytes > limit && !buckets.isEmpty()) {
+            Map.Entry<Integer, Deque<Bitmap>> largest = buckets.lastEntry();
+            Bitmap bitmap = largest.getValue().pollFirst();
+            if (largest.getValue().isEmpty()) {
+                buckets.remove(largest.getKey());
+            }
+            currentBytes -= largest.getKey();
+            entries--;
+            evictions++;
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * Shrink under memory pressure, keeping this fraction of the budget
+     */
+    synchronized void trim(float keepFraction) {
+        trimToSize((long) (maxBytes * keepFraction));
+        Log.d(TAG, "Trimmed to " + currentBytes + " bytes");
+    }
+
+    synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = Math.max(0, maxBytes);
+        trimToSize(this.maxBytes);
+    }
+
+    synchronized void clear() {
+        trimToSize(0);
+    }
+
+    synchronized JSONObject stats() throws JSONException {
+        JSONObject result = new JSONObject();
+        result.put("entries", entries);
+        result.put("bytes", currentBytes);
+        result.put("maxBytes", maxBytes);
+        result.put("hits", hits);
+        result.put("misses", misses);
+        long lookups = hits + misses;
+        result.put("hitRate", lookups > 0 ? hits / (double) lookups : 0);
+        result.put("puts", puts);
+        result.put("evictions", evictions);
+        result.put("bytesSaved", bytesSaved);
+        return result;
+    }
+}
@@ -0,0 +1,176 @@
+package com.eov.cordova.watermeter;
+
+import android.graphics.Bitmap;
+import android.util.Base64;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bridge-side encoding shared by the plugin actions
+ * Kept free of Cordova and Activity dependencies so the JVM benchmark in benchmark/ runs this exact code.
+ */
+final class BridgeCodec {
+
+    static final String JPEG_DATA_URL_PREFIX = "data:image/jpeg;base64,";
+    private static final String BASE64_MARKER = "base64,";
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+    private static final char[] BASE64_ALPHABET =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+    private static final int INITIAL_JPEG_BUFFER = 64 * 1024;
+    // Larger images drop the buffers after use, so a thread keeps at most ~256 KB of JPEG bytes
+    // and ~350 K base64 chars between encodes
+    static final int MAX_RETAINED_BUFFER = 256 * 1024;
+
+    /**
+     * JPEG output stream whose backing array can be read without the toByteArray() copy
+     */
+    private static final class JpegBuffer extends ByteArrayOutputStream {
+        JpegBuffer() {
+            super(INITIAL_JPEG_BUFFER);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
+
+    /**
+     * Per-thread encode buffers, reused by every data URL built on that thread
+     */
+    private static final class EncodeBuffers {
+        final int generation;
+        final JpegBuffer jpeg = new JpegBuffer();
+        char[] chars = new char[0];
+
+        EncodeBuffers(int generation) {
+            this.generation = generation;
+        }
+    }
+
+    private static final ThreadLocal<EncodeBuffers> ENCODE_BUFFERS = new ThreadLocal<>();
+    private static volatile int bufferGeneration;
+    private static final AtomicLong encodes = new AtomicLong();
+    private static final AtomicLong bufferHits = new AtomicLong();
+    private static final AtomicLong bytesSaved = new AtomicLong();
+
+    private BridgeCodec() {
+    }
+
+    /**
+     * Decode a base64 image, skipping a data URL prefix in place instead of copying a substring
+     */
+    static byte[] decodeBase64Image(String base64Image) {
+        byte[] base64Bytes = base64Image.getBytes(US_ASCII);
+        int markerIndex = base64Image.indexOf(BASE64_MARKER);
+        int offset = markerIndex >= 0 ? markerIndex + BASE64_MARKER.length() : 0;
+        return Base64.decode(base64Bytes, offset, base64Bytes.length - offset, Base64.DEFAULT);
+    }
+
+    /**
+     * Compress a bitmap to JPEG and wrap it in a data URL
+     * JPEG bytes and base64 characters go through this thread's reusable buffers; the returned
+     * String is the only allocation once the buffers have grown to the usual image size.
+     */
+    static String encodeJpegDataUrl(Bitmap bitmap, int quality) {
+        EncodeBuffers buffers = acquireBuffers();
+        JpegBuffer jpeg = buffers.jpeg;
+        jpeg.reset();
+        byte[] before = jpeg.array();
+        bitmap.compress(Bitmap.CompressFormat.JPEG, quality, jpeg);
+        // A grown JPEG buffer was a fresh allocation, not a reuse
+        int jpegSaved = jpeg.array() == before ? jpeg.size() : -1;
+        return encodeDataUrl(buffers, jpeg.array(), jpeg.size(), jpegSaved);
+    }
+
+    static String toJpegDataUrl(byte[] jpeg) {
+        return encodeDataUrl(acquireBuffers(), jpeg, jpeg.length, 0);
+    }
+
+    /**
+     * Let every thread's encode buffers go at its next encode, e.g. under memory pressure
+     */
+    static void releaseBuffers() {
+        bufferGeneration++;
+    }
+
+    static JSONObject bufferStats() throws JSONException {
+        JSONObject result = new JSONObject();
+        long count = encodes.get();
+        result.put("encodes", count);
+        result.put("hits", bufferHits.get());
+        result.put("hitRate", count > 0 ? bufferHits.get() / (double) count : 0);
+        result.put("bytesSaved", bytesSaved.get());
+        return result;
+    }
+
+    private static EncodeBuffers acquireBuffers() {
+        EncodeBuffers buffers = ENCODE_BUFFERS.get();
+        int generation = bufferGeneration;
+        if (buffers == null || buffers.generation != generation) {
+            buffers = new EncodeBuffers(generation);
+            ENCODE_BUFFERS.set(buffers);
+        }
+        return buffers;
+    }
+
+    /**
+     * Standard base64 (NO_WRAP) of data[0, length) after the data URL prefix, built in the reusable char buffer
+     */
+    private static String encodeDataUrl(EncodeBuffers buffers, byte[] data, int length, int jpegSaved) {
+        int prefixLength = JPEG_DATA_URL_PREFIX.length();
+        int size = prefixLength + (length + 2) / 3 * 4;
+        char[] chars = buffers.chars;
+        boolean reused = jpegSaved >= 0 && chars.length >= size;
+        if (chars.length < size) {
+            chars = new char[size];
+            buffers.chars = chars;
+        }
+        JPEG_DATA_URL_PREFIX.getChars(0, prefixLength, chars, 0);
+
+        int out = prefixLength;
+        int i = 0;
+        for (; i + 2 < length; i += 3) {
+            int bits = (data[i] & 0xff) << 16 | (data[i + 1] & 0xff) << 8 | (data[i + 2] & 0xff);
+            chars[out++] = BASE64_ALPHABET[bits >>> 18];
+            chars[out++] = BASE64_ALPHABET[(bits >>> 12) & 0x3f];
+            chars[out++] = BASE64_ALPHABET[(bits >>> 6) & 0x3f];
+            chars[out++] = BASE64_ALPHABET[bits & 0x3f];
+        }
+        int remaining = length - i;
+        if (remaining > 0) {
+            int bits = (data[i] & 0xff) << 16 | (remaining == 2 ? (data[i + 1] & 0xff) << 8 : 0);
+            chars[out++] = BASE64_ALPHABET[bits >>> 18];
+            chars[out++] = BASE64_ALPHABET[(bits >>> 12) & 0x3f];
+            chars[out++] = remaining == 2 ? BASE64_ALPHABET[(bits >>> 6) & 0x3f] : '=';
+            chars[out++] = '=';
+        }
+        String dataUrl = new String(chars, 0, out);
+
+        encodes.incrementAndGet();
+        if (reused) {
+            bufferHits.incrementAndGet();
+            bytesSaved.addAndGet(jpegSaved + 2L * size);
+        }
+        // chars only grow for a longer input, so bounding length bounds them too
+        if (buffers.jpeg.array().length > MAX_RETAINED_BUFFER || length > MAX_RETAINED_BUFFER) {
+            ENCODE_BUFFERS.remove();
+        }
+        return dataUrl;
+    }
+
+    /**
+     * Recognition result as returned to JS
+     */
+    static JSONObject buildResult(String text, float confidence) throws JSONException {
+        JSONObject result = new JSONObject();
+        result.put("text", text != null ? text : "");
+        result.put("confidence", confidence);
+        result.put("success", text != null && !text.isEmpty());
+        return result;
+    }
+}
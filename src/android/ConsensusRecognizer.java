@@ -0,0 +1,229 @@
+package com.eov.cordova.watermeter;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Multi-frame recognition of one meter
+ * Frames run concurrently through the predictor pool and their readings are fused by
+ * confidence-weighted per-character voting; remaining frames are skipped once the vote
+ * is clear enough.
+ */
+class ConsensusRecognizer {
+
+    private static final String TAG = "WaterMeterConsensus";
+    static final double DEFAULT_THRESHOLD = 0.9;
+    static final int DEFAULT_MIN_FRAMES = 2;
+
+    /**
+     * Decode, inference and bitmap release supplied by the plugin
+     */
+    interface Engine {
+        Bitmap decode(int index) throws Exception;
+
+        JSONObject recognize(int index, Bitmap bitmap, RecognitionMetrics.Timings timings) throws Exception;
+
+        void release(Bitmap bitmap);
+    }
+
+    /**
+     * Vote outcome: fused reading and how strongly the frames agree on it
+     */
+    static final class Vote {
+        final String reading;
+        final double agreement;
+        final double confidence;
+        final int supporting;
+
+        Vote(String reading, double agreement, double confidence, int supporting) {
+            this.reading = reading;
+            this.agreement = agreement;
+            this.confidence = confidence;
+            this.supporting = supporting;
+        }
+    }
+
+    private final Engine engine;
+    private final int frameCount;
+    private final int concurrency;
+    private final double threshold;
+    private final int minFrames;
+
+    ConsensusRecognizer(Engine engine, int frameCount, int concurrency, JSONObject options) {
+        this.engine = engine;
+        this.frameCount = frameCount;
+        this.concurrency = Math.max(1, Math.min(concurrency, frameCount));
+        this.threshold = options.optDouble("threshold", DEFAULT_THRESHOLD);
+        this.minFrames = Math.max(1, Math.min(options.optInt("minFrames", DEFAULT_MIN_FRAMES), frameCount));
+    }
+
+    /**
+     * Recognize frames until consensus or until all are done, returning the fused result
+     */
+    JSONObject run(RecognitionScheduler.Job job) throws Exception {
+        long startTime = System.currentTimeMillis();
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        CompletionService<JSONObject> completion = new ExecutorCompletionService<>(workers);
+        List<Future<JSONObject>> futures = new ArrayList<>(frameCount);
+        JSONArray frames = new JSONArray();
+        List<JSONObject> readings = new ArrayList<>();
+        Vote vote = null;
+        boolean stoppedEarly = false;
+        try {
+            for (int i = 0; i < frameCount; i++) {
+                final int index = i;
+                futures.add(completion.submit(() -> recognizeFrame(index)));
+            }
+
+            for (int done = 0; done < frameCount; done++) {
+                JSONObject frame;
+                try {
+                    frame = completion.take().get();
+                } catch (ExecutionException e) {
+                    // recognizeFrame reports its own failures; anything here is unexpected
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+                frames.put(frame);
+                if (!frame.has("error") && !frame.optString("reading", "").isEmpty()) {
+                    readings.add(frame);
+                }
+
+                vote = vote(readings);
+                if (job != null && job.isCancelled()) {
+                    break;
+                }
+                if (readings.size() >= minFrames && vote != null && vote.agreement >= threshold && done + 1 < frameCount) {
+                    stoppedEarly = true;
+                    break;
+                }
+            }
+        } finally {
+            // Frames still queued are skipped; running ones finish and are discarded
+            for (Future<JSONObject> future : futures) {
+                future.cancel(false);
+            }
+            workers.shutdown();
+        }
+
+        JSONObject result = BridgeCodec.buildResult(vote != null ? vote.reading : "", vote != null ? (float) vote.confidence : 0f);
+        result.put("agreement", vote != null ? Math.round(vote.agreement * 1000) / 1000.0 : 0);
+        result.put("supportingFrames", vote != null ? vote.supporting : 0);
+        result.put("framesUsed", frames.length());
+        result.put("framesTotal", frameCount);
+        result.put("stoppedEarly", stoppedEarly);
+        result.put("frames", frames);
+        result.put("durationMs", System.currentTimeMillis() - startTime);
+        Log.d(TAG, "Consensus " + result.optString("text") + " from " + frames.length() + "/" + frameCount
+            + " frames, agreement=" + result.optDouble("agreement"));
+        return result;
+    }
+
+    private JSONObject recognizeFrame(int index) throws JSONException {
+        JSONObject frame = new JSONObject();
+        frame.put("index", index);
+        try {
+            long start = System.nanoTime();
+            Bitmap bitmap = engine.decode(index);
+            if (bitmap == null) {
+                throw new IllegalStateException("Failed to decode frame " + index);
+            }
+            RecognitionMetrics.Timings timings = new RecognitionMetrics.Timings();
+            timings.add(RecognitionMetrics.STAGE_DECODE, System.nanoTime() - start);
+            JSONObject result;
+            try {
+                result = engine.recognize(index, bitmap, timings);
+            } finally {
+                engine.release(bitmap);
+            }
+            frame.put("text", result.optString("text"));
+            frame.put("reading", result.optString("reading"));
+            frame.put("confidence", result.optDouble("confidence", 0));
+        } catch (Exception e) {
+            Log.w(TAG, "Frame " + index + " failed: " + e.getMessage());
+            frame.put("error", e.getMessage() != null ? e.getMessage() : e.toString());
+        }
+        return frame;
+    }
+
+    /**
+     * Confidence-weighted vote: the reading length with the most weight wins, then each
+     * position takes the character with the most weight among frames of that length.
+     * Agreement is the winning length's share times the mean per-position share.
+     */
+    static Vote vote(List<JSONObject> frames) {
+        Map<Integer, Double> lengthWeights = new HashMap<>();
+        double totalWeight = 0;
+        for (JSONObject frame : frames) {
+            double weight = weight(frame);
+            int length = frame.optString("reading").length();
+            Double previous = lengthWeights.get(length);
+            lengthWeights.put(length, (previous != null ? previous : 0) + weight);
+            totalWeight += weight;
+        }
+        int bestLength = -1;
+        double bestLengthWeight = -1;
+        for (Map.Entry<Integer, Double> entry : lengthWeights.entrySet()) {
+            if (entry.getValue() > bestLengthWeight) {
+                bestLength = entry.getKey();
+                bestLengthWeight = entry.getValue();
+            }
+        }
+        if (bestLength <= 0 || totalWeight <= 0) {
+            return null;
+        }
+
+        StringBuilder fused = new StringBuilder(bestLength);
+        double shareSum = 0;
+        for (int position = 0; position < bestLength; position++) {
+            double[] charWeights = new double[10];
+            for (JSONObject frame : frames) {
+                String reading = frame.optString("reading");
+                if (reading.length() == bestLength) {
+                    charWeights[reading.charAt(position) - '0'] += weight(frame);
+                }
+            }
+            int best = 0;
+            for (int digit = 1; digit < 10; digit++) {
+                if (charWeights[digit] > charWeights[best]) {
+                    best = digit;
+                }
+            }
+            fused.append((char) ('0' + best));
+            shareSum += charWeights[best] / bestLengthWeight;
+        }
+        String reading = fused.toString();
+
+        // Confidence of the fused reading: mean confidence of the frames that read exactly it
+        double confidenceSum = 0;
+        int supporting = 0;
+        for (JSONObject frame : frames) {
+            if (reading.equals(frame.optString("reading"))) {
+                confidenceSum += frame.optDouble("confidence", 0);
+                supporting++;
+            }
+        }
+        double agreement = (bestLengthWeight / totalWeight) * (shareSum / bestLength);
+        double confidence = supporting > 0 ? confidenceSum / supporting : agreement;
+        return new Vote(reading, agreement, confidence, supporting);
+    }
+
+    private static double weight(JSONObject frame) {
+        // A zero-confidence frame still counts a little so a lone reading can win
+        return Math.max(0.01, frame.optDouble("confidence", 0));
+    }
+}
@@ -0,0 +1,344 @@
+package com.eov.cordova.watermeter;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import org.apache.cordova.CallbackContext;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.regex.Pattern;
+
+/**
+ * Resumable import of a whole image folder
+ * The tree is walked one directory at a time in sorted order, every result is appended to an
+ * NDJSON file, and a small checkpoint (last path + output length) lets an interrupted import
+ * continue after the last recorded image instead of starting over.
+ */
+class DirectoryImporter {
+
+    private static final String TAG = "WaterMeterImport";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    static final String DEFAULT_GLOB = "*.{jpg,jpeg,png}";
+    static final int DEFAULT_CHECKPOINT_EVERY = 20;
+
+    /**
+     * Checkpoint of one import, persisted as JSON next to its output
+     */
+    private static final class Checkpoint {
+        String directory;
+        String glob;
+        long since;
+        String outputPath;
+        String lastPath = "";
+        long outputLength;
+        int processed;
+        int succeeded;
+        int failed;
+        boolean complete;
+
+        JSONObject toJson() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("directory", directory);
+            json.put("glob", glob);
+            json.put("since", since);
+            json.put("outputPath", outputPath);
+            json.put("lastPath", lastPath);
+            json.put("outputLength", outputLength);
+            json.put("processed", processed);
+            json.put("succeeded", succeeded);
+            json.put("failed", failed);
+            json.put("complete", complete);
+            return json;
+        }
+
+        static Checkpoint fromJson(JSONObject json) {
+            Checkpoint checkpoint = new Checkpoint();
+            checkpoint.directory = json.optString("directory");
+            checkpoint.glob = json.optString("glob", DEFAULT_GLOB);
+            checkpoint.since = json.optLong("since", 0);
+            checkpoint.outputPath = json.optString("outputPath");
+            checkpoint.lastPath = json.optString("lastPath", "");
+            checkpoint.outputLength = json.optLong("outputLength", 0);
+            checkpoint.processed = json.optInt("processed");
+            checkpoint.succeeded = json.optInt("succeeded");
+            checkpoint.failed = json.optInt("failed");
+            checkpoint.complete = json.optBoolean("complete");
+            return checkpoint;
+        }
+    }
+
+    private final BatchRecognizer.Engine engine;
+    private final File stateDir;
+    private final int checkpointEvery;
+
+    DirectoryImporter(BatchRecognizer.Engine engine, File stateDir, JSONObject options) {
+        this.engine = engine;
+        this.stateDir = stateDir;
+        this.checkpointEvery = Math.max(1, options.optInt("checkpointEvery", DEFAULT_CHECKPOINT_EVERY));
+    }
+
+    /**
+     * Run (or resume) an import on the calling thread, streaming progress to the callback
+     * outputPath is a plain file path, or empty for a new file in the state dir; a new import
+     * refuses an existing file rather than overwrite it, only a resume appends to its output
+     */
+    void run(String directory, String outputPath, JSONObject options, RecognitionScheduler.Job job,
+             CallbackContext callbackContext) throws IOException, JSONException {
+        File root = new File(directory);
+        if (!root.isDirectory()) {
+            callbackContext.error("Directory does not exist: " + directory);
+            return;
+        }
+        if (!stateDir.exists() && !stateDir.mkdirs()) {
+            throw new IOException("Cannot create import state dir: " + stateDir);
+        }
+
+        String token = options.optString("resumeToken", "");
+        Checkpoint checkpoint = token.isEmpty() ? null : loadCheckpoint(token);
+        if (checkpoint != null && !root.getAbsolutePath().equals(checkpoint.directory)) {
+            callbackContext.error("Resume token belongs to another directory: " + checkpoint.directory);
+            return;
+        }
+        if (token.isEmpty()) {
+            token = "import-" + Long.toString(System.currentTimeMillis(), 36);
+        }
+        if (checkpoint == null) {
+            checkpoint = new Checkpoint();
+            checkpoint.directory = root.getAbsolutePath();
+            checkpoint.glob = options.optString("glob", DEFAULT_GLOB);
+            checkpoint.since = options.optLong("since", 0);
+            File output = outputPath.isEmpty() ? stateFile(token, ".ndjson") : new File(outputPath);
+            if (output.exists()) {
+                callbackContext.error("Output file already exists: " + output.getPath());
+                return;
+            }
+            checkpoint.outputPath = output.getAbsolutePath();
+        }
+        boolean resumed = checkpoint.processed > 0;
+
+        long startTime = System.currentTimeMillis();
+        int newlyProcessed = 0;
+        if (!checkpoint.complete) {
+            File output = new File(checkpoint.outputPath);
+            truncate(output, checkpoint.outputLength);
+            Pattern glob = compileGlob(checkpoint.glob);
+            Deque<String> pending = new ArrayDeque<>();
+            pending.push("");
+
+            try (FileOutputStream out = new FileOutputStream(output, true)) {
+                // Depth-first walk in sorted order, so the walk order equals path order and
+                // everything up to lastPath can be skipped without touching it
+                while (!pending.isEmpty() && !job.isCancelled()) {
+                    String relative = pending.pop();
+                    File file = relative.isEmpty() ? root : new File(root, relative);
+                    if (file.isDirectory()) {
+                        if (!relative.isEmpty() && !isPrefix(relative, checkpoint.lastPath)
+                                && comparePaths(relative, checkpoint.lastPath) < 0) {
+                            continue;
+                        }
+                        String[] names = file.list();
+                        if (names == null) {
+                            continue;
+                        }
+                        Arrays.sort(names);
+                        for (int i = names.length - 1; i >= 0; i--) {
+                            pending.push(relative.isEmpty() ? names[i] : relative + "/" + names[i]);
+                        }
+                        continue;
+                    }
+                    if (comparePaths(relative, checkpoint.lastPath) <= 0
+                            || !glob.matcher(file.getName()).matches()
+                            || file.lastModified() <= checkpoint.since) {
+                        continue;
+                    }
+
+                    JSONObject line = recognize(file, relative);
+                    boolean ok = !line.has("error");
+                    out.write(line.toString().getBytes(UTF8));
+                    out.write('\n');
+                    checkpoint.processed++;
+                    if (ok) {
+                        checkpoint.succeeded++;
+                    } else {
+                        checkpoint.failed++;
+                    }
+                    checkpoint.lastPath = relative;
+                    newlyProcessed++;
+
+                    if (newlyProcessed % checkpointEvery == 0) {
+                        saveCheckpoint(token, checkpoint, out);
+                    }
+
+                    JSONObject progress = new JSONObject();
+                    progress.put("type", "progress");
+                    progress.put("processed", checkpoint.processed);
+                    progress.put("succeeded", checkpoint.succeeded);
+                    progress.put("failed", checkpoint.failed);
+                    progress.put("item", line);
+                    progress.put("resumeToken", token);
+                    WaterMeterPlugin.sendUpdate(callbackContext, progress);
+                }
+                checkpoint.complete = pending.isEmpty();
+                saveCheckpoint(token, checkpoint, out);
+            }
+        }
+
+        JSONObject summary = new JSONObject();
+        summary.put("type", "complete");
+        summary.put("jobId", job.id);
+        summary.put("resumeToken", token);
+        summary.put("resumed", resumed);
+        summary.put("complete", checkpoint.complete);
+        summary.put("cancelled", job.isCancelled());
+        summary.put("processed", checkpoint.processed);
+        summary.put("newlyProcessed", newlyProcessed);
+        summary.put("succeeded", checkpoint.succeeded);
+        summary.put("failed", checkpoint.failed);
+        summary.put("outputPath", checkpoint.outputPath);
+        summary.put("durationMs", System.currentTimeMillis() - startTime);
+        Log.d(TAG, "Import " + token + ": processed=" + checkpoint.processed + ", complete=" + checkpoint.complete);
+        callbackContext.success(summary);
+    }
+
+    /**
+     * One NDJSON line: the result, or the error, for a single image
+     */
+    private JSONObject recognize(File file, String relative) throws JSONException {
+        JSONObject line = new JSONObject();
+        line.put("path", relative);
+        line.put("modified", file.lastModified());
+        try {
+            long start = System.nanoTime();
+            Bitmap bitmap = engine.decode(file.getAbsolutePath());
+            if (bitmap == null) {
+                throw new IllegalStateException("Failed to load image from: " + file.getAbsolutePath());
+            }
+            RecognitionMetrics.Timings timings = new RecognitionMetrics.Timings();
+            timings.add(RecognitionMetrics.STAGE_DECODE, System.nanoTime() - start);
+            try {
+                line.put("result", engine.recognize(file.getAbsolutePath(), bitmap, timings));
+            } finally {
+                engine.release(bitmap);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Import of " + relative + " failed", e);
+            line.put("error", e.getMessage() != null ? e.getMessage() : e.toString());
+        }
+        return line;
+    }
+
+    /**
+     * Flush the output, then atomically replace the checkpoint so it never points past written data
+     */
+    private void saveCheckpoint(String token, Checkpoint checkpoint, FileOutputStream out) throws IOException, JSONException {
+        out.flush();
+        out.getFD().sync();
+        checkpoint.outputLength = out.getChannel().size();
+        File target = checkpointFile(token);
+        File tmp = stateFile(token, ".tmp");
+        try (OutputStream stream = new FileOutputStream(tmp)) {
+            stream.write(checkpoint.toJson().toString().getBytes(UTF8));
+        }
+        if (!tmp.renameTo(target)) {
+            tmp.delete();
+            throw new IOException("Failed to write checkpoint " + target);
+        }
+    }
+
+    private Checkpoint loadCheckpoint(String token) {
+        File file = checkpointFile(token);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            return Checkpoint.fromJson(new JSONObject(new String(WaterMeterPlugin.readFile(file), UTF8)));
+        } catch (Exception e) {
+            Log.w(TAG, "Ignoring unreadable checkpoint " + token + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private File checkpointFile(String token) {
+        return stateFile(token, ".checkpoint.json");
+    }
+
+    /**
+     * File in the state directory named after a resume token; the token comes from JS, so anything
+     * that could leave the directory is replaced
+     */
+    private File stateFile(String token, String suffix) {
+        return new File(stateDir, token.replaceAll("[^A-Za-z0-9._-]", "_") + suffix);
+    }
+
+    /**
+     * Drop lines written after the last checkpoint so a resumed import does not duplicate them
+     */
+    private static void truncate(File output, long length) throws IOException {
+        if (!output.exists() || output.length() <= length) {
+            return;
+        }
+        try (FileOutputStream out = new FileOutputStream(output, true)) {
+            out.getChannel().truncate(length);
+        }
+    }
+
+    /**
+     * Compare relative paths segment by segment, matching the walk order
+     */
+    static int comparePaths(String a, String b) {
+        String[] left = a.split("/");
+        String[] right = b.split("/");
+        for (int i = 0; i < Math.min(left.length, right.length); i++) {
+            int result = left[i].compareTo(right[i]);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return left.length - right.length;
+    }
+
+    private static boolean isPrefix(String directory, String path) {
+        return path.startsWith(directory + "/");
+    }
+
+    /**
+     * File name glob: * and ? wildcards plus {a,b} alternatives, case-insensitive
+     */
+    static Pattern compileGlob(String glob) {
+        StringBuilder regex = new StringBuilder();
+        boolean inGroup = false;
+        for (char c : glob.toCharArray()) {
+            switch (c) {
+                case '*':
+                    regex.append(".*");
+                    break;
+                case '?':
+                    regex.append('.');
+                    break;
+                case '{':
+                    inGroup = true;
+                    regex.append("(?:");
+                    break;
+                case '}':
+                    inGroup = false;
+                    regex.append(')');
+                    break;
+                case ',':
+                    regex.append(inGroup ? "|" : ",");
+                    break;
+                default:
+                    regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE);
+    }
+}
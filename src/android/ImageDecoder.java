@@ -0,0 +1,177 @@
+package com.eov.cordova.watermeter;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+
+/**
+ * Bounds-first image decoding
+ * Reads the image header, picks an inSampleSize for the requested max side length and only
+ * then allocates pixels, so multi-megapixel photos never materialize at full resolution.
+ */
+final class ImageDecoder {
+
+    static final int DEFAULT_MAX_SIDE_LENGTH = 1920;
+
+    /**
+     * Decode options parsed from the JS options object
+     */
+    static final class Options {
+        /** Longest side the decoded bitmap should cover; 0 decodes at full resolution */
+        int maxSideLength = DEFAULT_MAX_SIDE_LENGTH;
+        /** Decode to RGB_565, halving pixel memory */
+        boolean lowMemory;
+        /** Region of interest in source image pixels, null for the whole image */
+        Rect roi;
+        /** Fixed inSampleSize; 0 picks one from maxSideLength */
+        int sampleSize;
+        /** Pool to decode into with inBitmap, null always allocates */
+        BitmapPool pool;
+
+        static Options fromJson(JSONObject json) {
+            Options options = new Options();
+            if (json == null) {
+                return options;
+            }
+            options.maxSideLength = Math.max(0, json.optInt("maxSideLength", DEFAULT_MAX_SIDE_LENGTH));
+            options.lowMemory = json.optBoolean("lowMemory", false);
+            JSONObject roi = json.optJSONObject("roi");
+            if (roi != null) {
+                int x = roi.optInt("x", 0);
+                int y = roi.optInt("y", 0);
+                options.roi = new Rect(x, y, x + roi.optInt("width", 0), y + roi.optInt("height", 0));
+            }
+            return options;
+        }
+    }
+
+    private ImageDecoder() {
+    }
+
+    /**
+     * Decode an image file, downsampled to the requested size
+     */
+    static Bitmap decodeFile(String path, Options options) throws IOException {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            return null;
+        }
+
+        if (options.roi != null) {
+            Rect region = clampRegion(options.roi, bounds.outWidth, bounds.outHeight);
+            BitmapRegionDecoder decoder = BitmapRegionDecoder.newInstance(path, false);
+            return decodeRegion(decoder, region, options);
+        }
+        return decodePixels(bounds.outWidth, bounds.outHeight, options, decode -> BitmapFactory.decodeFile(path, decode));
+    }
+
+    /**
+     * Decode encoded image bytes, downsampled to the requested size
+     */
+    static Bitmap decodeByteArray(byte[] data, int offset, int length, Options options) throws IOException {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, offset, length, bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            return null;
+        }
+
+        if (options.roi != null) {
+            Rect region = clampRegion(options.roi, bounds.outWidth, bounds.outHeight);
+            BitmapRegionDecoder decoder = BitmapRegionDecoder.newInstance(data, offset, length, false);
+            return decodeRegion(decoder, region, options);
+        }
+        return decodePixels(bounds.outWidth, bounds.outHeight, options,
+            decode -> BitmapFactory.decodeByteArray(data, offset, length, decode));
+    }
+
+    /**
+     * Largest power of two that keeps the longest side at or above maxSideLength
+     */
+    static int computeSampleSize(int width, int height, int maxSideLength) {
+        int sampleSize = 1;
+        if (maxSideLength <= 0) {
+            return sampleSize;
+        }
+        int longSide = Math.max(width, height);
+        while (longSide / (sampleSize * 2) >= maxSideLength) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private interface PixelDecoder {
+        Bitmap decode(BitmapFactory.Options decode);
+    }
+
+    private static BitmapFactory.Options pixelOptions(int width, int height, Options options, boolean reuse) {
+        BitmapFactory.Options decode = new BitmapFactory.Options();
+        decode.inSampleSize = options.sampleSize > 0
+            ? options.sampleSize : computeSampleSize(width, height, options.maxSideLength);
+        decode.inPreferredConfig = options.lowMemory ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+        if (reuse && options.pool != null) {
+            // Sampled size rounded up, so the pooled bitmap is never too small
+            int sampledWidth = (width + decode.inSampleSize - 1) / decode.inSampleSize;
+            int sampledHeight = (height + decode.inSampleSize - 1) / decode.inSampleSize;
+            decode.inMutable = true;
+            decode.inBitmap = options.pool.get(sampledWidth, sampledHeight, decode.inPreferredConfig);
+        }
+        return decode;
+    }
+
+    /**
+     * Decode pixels, into a pooled bitmap when one fits; falls back to a fresh bitmap if it is rejected
+     */
+    private static Bitmap decodePixels(int width, int height, Options options, PixelDecoder decoder) {
+        BitmapFactory.Options decode = pixelOptions(width, height, options, true);
+        Bitmap reuse = decode.inBitmap;
+        try {
+            Bitmap bitmap = decoder.decode(decode);
+            if (bitmap == null && reuse != null) {
+                options.pool.put(reuse);
+            }
+            return bitmap;
+        } catch (IllegalArgumentException e) {
+            if (reuse == null) {
+                throw e;
+            }
+            reuse.recycle();
+            decode.inBitmap = null;
+            return decoder.decode(decode);
+        }
+    }
+
+    private static Bitmap decodeRegion(BitmapRegionDecoder decoder, Rect region, Options options) {
+        if (decoder == null) {
+            return null;
+        }
+        try {
+            // BitmapRegionDecoder draws into inBitmap without resizing it, so a larger pooled
+            // bitmap would keep its size and the previous image around the crop; always allocate
+            BitmapFactory.Options decode = pixelOptions(region.width(), region.height(), options, false);
+            return decoder.decodeRegion(region, decode);
+        } finally {
+            decoder.recycle();
+        }
+    }
+
+    private static Rect clampRegion(Rect roi, int width, int height) {
+        Rect region = new Rect(
+            Math.max(0, roi.left),
+            Math.max(0, roi.top),
+            Math.min(width, roi.right),
+            Math.min(height, roi.bottom)
+        );
+        if (region.width() <= 0 || region.height() <= 0) {
+            throw new IllegalArgumentException("roi is outside the image bounds");
+        }
+        return region;
+    }
+}
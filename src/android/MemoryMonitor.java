@@ -0,0 +1,142 @@
+package com.eov.cordova.watermeter;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Debug;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Forwards Android memory-pressure signals to the plugin and reports current memory usage
+ * Registered on the application context so trim callbacks keep arriving while the scanner
+ * activity is in front.
+ */
+final class MemoryMonitor implements ComponentCallbacks2 {
+
+    private static final String TAG = "WaterMeterMemory";
+
+    /**
+     * Receives trim levels; called on the main thread, so heavy work has to be moved off it
+     */
+    interface Listener {
+        void onMemoryPressure(int level);
+    }
+
+    private final Context context;
+    private final Listener listener;
+    private boolean registered;
+    private volatile int lastTrimLevel = -1;
+    private volatile long lastTrimAt;
+    private volatile int trimCount;
+
+    MemoryMonitor(Context context, Listener listener) {
+        this.context = context.getApplicationContext();
+        this.listener = listener;
+    }
+
+    synchronized void register() {
+        if (!registered) {
+            context.registerComponentCallbacks(this);
+            registered = true;
+        }
+    }
+
+    synchronized void unregister() {
+        if (registered) {
+            context.unregisterComponentCallbacks(this);
+            registered = false;
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        lastTrimLevel = level;
+        lastTrimAt = System.currentTimeMillis();
+        trimCount++;
+        Log.i(TAG, "onTrimMemory " + levelName(level));
+        listener.onMemoryPressure(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    /**
+     * The level needs everything idle released, not just extra instances
+     */
+    static boolean isCritical(int level) {
+        return level == TRIM_MEMORY_RUNNING_CRITICAL || level >= TRIM_MEMORY_BACKGROUND;
+    }
+
+    static String levelName(int level) {
+        switch (level) {
+            case TRIM_MEMORY_RUNNING_MODERATE:
+                return "runningModerate";
+            case TRIM_MEMORY_RUNNING_LOW:
+                return "runningLow";
+            case TRIM_MEMORY_RUNNING_CRITICAL:
+                return "runningCritical";
+            case TRIM_MEMORY_UI_HIDDEN:
+                return "uiHidden";
+            case TRIM_MEMORY_BACKGROUND:
+                return "background";
+            case TRIM_MEMORY_MODERATE:
+                return "moderate";
+            case TRIM_MEMORY_COMPLETE:
+                return "complete";
+            default:
+                return String.valueOf(level);
+        }
+    }
+
+    /**
+     * Java heap, native heap and system memory, plus the last trim signal received
+     */
+    JSONObject snapshot() throws JSONException {
+        Runtime runtime = Runtime.getRuntime();
+        JSONObject javaHeap = new JSONObject();
+        javaHeap.put("used", runtime.totalMemory() - runtime.freeMemory());
+        javaHeap.put("total", runtime.totalMemory());
+        javaHeap.put("max", runtime.maxMemory());
+
+        JSONObject nativeHeap = new JSONObject();
+        nativeHeap.put("allocated", Debug.getNativeHeapAllocatedSize());
+        nativeHeap.put("size", Debug.getNativeHeapSize());
+
+        JSONObject result = new JSONObject();
+        result.put("javaHeap", javaHeap);
+        result.put("nativeHeap", nativeHeap);
+
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        if (activityManager != null) {
+            ActivityManager.MemoryInfo info = new ActivityManager.MemoryInfo();
+            activityManager.getMemoryInfo(info);
+            JSONObject system = new JSONObject();
+            system.put("available", info.availMem);
+            system.put("total", info.totalMem);
+            system.put("threshold", info.threshold);
+            system.put("lowMemory", info.lowMemory);
+            result.put("system", system);
+            result.put("memoryClassMb", activityManager.getMemoryClass());
+            result.put("lowRamDevice", activityManager.isLowRamDevice());
+        }
+
+        result.put("trimCount", trimCount);
+        if (lastTrimLevel >= 0) {
+            JSONObject lastTrim = new JSONObject();
+            lastTrim.put("level", levelName(lastTrimLevel));
+            lastTrim.put("at", lastTrimAt);
+            result.put("lastTrim", lastTrim);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,466 @@
+package com.eov.cordova.watermeter;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.eov.watermeter.ocr.Predictor;
+import com.eov.watermeter.ocr.PredictorManager;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of OCR predictors
+ * Each recognition checks out its own Predictor so concurrent calls never share
+ * input/output state. The first instance is the SDK's PredictorManager predictor;
+ * extra instances are loaded on demand and released again once idle.
+ */
+class PredictorPool {
+
+    private static final String TAG = "WaterMeterPool";
+    static final int DEFAULT_MAX_SIZE = 2;
+    static final int MAX_SIZE_LIMIT = 4;
+    static final long DEFAULT_IDLE_TIMEOUT_MS = 60000;
+    private static final long ACQUIRE_TIMEOUT_MS = 30000;
+    private static final long DRAIN_TIMEOUT_MS = 5000;
+    static final String DEFAULT_MODEL_PATH = "models";
+    static final String DEFAULT_LABEL_PATH = "labels/ppocr_keys_v1.txt";
+    static final String DEFAULT_POWER_MODE = "LITE_POWER_HIGH";
+    static final List<String> POWER_MODES = Arrays.asList(
+        "LITE_POWER_HIGH", "LITE_POWER_LOW", "LITE_POWER_FULL",
+        "LITE_POWER_NO_BIND", "LITE_POWER_RAND_HIGH", "LITE_POWER_RAND_LOW");
+
+    /**
+     * A checked out predictor, must be handed back with release()
+     */
+    static final class Lease {
+        final Predictor predictor;
+        final boolean primary;
+        final int generation;
+        long lastUsed;
+
+        private Lease(Predictor predictor, boolean primary, int generation) {
+            this.predictor = predictor;
+            this.primary = primary;
+            this.generation = generation;
+        }
+    }
+
+    private final Context context;
+    private final Deque<Lease> idle = new ArrayDeque<>();
+    private final ScheduledExecutorService reaper = Executors.newSingleThreadScheduledExecutor();
+
+    private int maxSize = DEFAULT_MAX_SIZE;
+    private long idleTimeoutMs = DEFAULT_IDLE_TIMEOUT_MS;
+    private String modelPath = DEFAULT_MODEL_PATH;
+    private String labelPath = DEFAULT_LABEL_PATH;
+    private int cpuThreads;          // 0 = cores / maxSize
+    private String powerMode = DEFAULT_POWER_MODE;
+    private boolean useGpu;
+
+    private int live;            // idle + checked out + being created
+    private int checkedOut;
+    private int interactiveWaiting;
+    private int generation;
+    private boolean primaryActive;
+    private boolean draining;
+    private boolean standaloneFailed;    // model/label paths did not load, only the SDK predictor is used
+
+    PredictorPool(Context context) {
+        this.context = context.getApplicationContext();
+        reaper.scheduleWithFixedDelay(this::trimIdle, DEFAULT_IDLE_TIMEOUT_MS, DEFAULT_IDLE_TIMEOUT_MS / 2, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Apply pool options: maxSize, idleTimeoutMs, modelPath, labelPath, cpuThreads, powerMode, useGPU
+     */
+    synchronized void configure(JSONObject options) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int requested = options.optInt("maxSize", maxSize);
+        maxSize = Math.max(1, Math.min(requested, Math.min(MAX_SIZE_LIMIT, cores)));
+        idleTimeoutMs = Math.max(1000, options.optLong("idleTimeoutMs", idleTimeoutMs));
+        String model = options.optString("modelPath", modelPath);
+        String label = options.optString("labelPath", labelPath);
+        if (!model.equals(modelPath) || !label.equals(labelPath)) {
+            // New paths get another try at loading extra predictors
+            standaloneFailed = false;
+        }
+        modelPath = model;
+        labelPath = label;
+        if (options.has("cpuThreads") || options.has("powerMode") || options.has("useGPU")) {
+            applyTuning(options.optInt("cpuThreads", cpuThreads), options.optString("powerMode", powerMode),
+                options.optBoolean("useGPU", useGpu));
+        }
+        notifyAll();
+        Log.i(TAG, "Pool configured: maxSize=" + maxSize + ", idleTimeoutMs=" + idleTimeoutMs);
+    }
+    
+    /**
+     * Set inference threads per predictor (0 = cores / maxSize), Paddle Lite power mode and OpenCL use
+     * Only predictors created afterwards pick this up; drain() to reload the loaded ones
+     */
+    synchronized void applyTuning(int threads, String mode, boolean gpu) {
+        if (!POWER_MODES.contains(mode)) {
+            throw new IllegalArgumentException("Unknown powerMode: " + mode);
+        }
+        cpuThreads = Math.max(0, Math.min(threads, Runtime.getRuntime().availableProcessors()));
+        powerMode = mode;
+        useGpu = gpu;
+    }
+    
+    /**
+     * With non-default tuning every predictor is created here, because PredictorManager.init
+     * takes no thread or power mode settings
+     */
+    synchronized boolean isTuned() {
+        return cpuThreads > 0 || !DEFAULT_POWER_MODE.equals(powerMode) || useGpu;
+    }
+    
+    /**
+     * Identifies the configured inference settings, changes only when cpuThreads/powerMode/useGPU do
+     * The automatic thread count (cpuThreads 0) follows maxSize for predictors created afterwards;
+     * resizing the pool alone is no reason to reload the loaded ones
+     */
+    synchronized String tuningTag() {
+        return cpuThreads + "|" + powerMode + "|" + useGpu;
+    }
+
+    Lease acquire() throws Exception {
+        return acquire(RecognitionScheduler.PRIORITY_INTERACTIVE);
+    }
+
+    /**
+     * Check out a predictor, creating one if the pool has room, otherwise waiting for one to return
+     * Background callers (batch, directory import) step aside while interactive callers are waiting,
+     * so a returned predictor always goes to interactive work first
+     */
+    Lease acquire(int priority) throws Exception {
+        boolean interactive = priority == RecognitionScheduler.PRIORITY_INTERACTIVE;
+        boolean createPrimary;
+        int createGeneration;
+        synchronized (this) {
+            long deadline = System.currentTimeMillis() + ACQUIRE_TIMEOUT_MS;
+            if (interactive) {
+                interactiveWaiting++;
+            }
+            try {
+                while (draining || (idle.isEmpty() && live >= capacity()) || (!interactive && interactiveWaiting > 0)) {
+                    if (!draining && (!idle.isEmpty() || live < capacity())) {
+                        // Only held back for interactive work, which is progressing; not a stall
+                        deadline = System.currentTimeMillis() + ACQUIRE_TIMEOUT_MS;
+                    }
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        throw new IllegalStateException("Timed out waiting for OCR predictor");
+                    }
+                    wait(remaining);
+                }
+            } finally {
+                if (interactive && --interactiveWaiting == 0) {
+                    // Background callers held back for us may go now
+                    notifyAll();
+                }
+            }
+            Lease lease = idle.pollFirst();
+            if (lease != null) {
+                checkedOut++;
+                return lease;
+            }
+            // Reserve the slot, load outside the lock
+            live++;
+            checkedOut++;
+            createPrimary = !primaryActive && (!isTuned() || standaloneFailed);
+            if (createPrimary) {
+                primaryActive = true;
+            }
+            createGeneration = generation;
+        }
+
+        Predictor predictor = null;
+        try {
+            predictor = createPrimary ? loadPrimary() : loadSecondary();
+        } catch (IllegalStateException e) {
+            if (createPrimary) {
+                throw e;
+            }
+            // The model/label asset paths are not confirmed by the SDK; rather than failing every
+            // recognition, fall back to the SDK predictor alone and wait for or load that instead
+            String paths;
+            synchronized (this) {
+                standaloneFailed = true;
+                paths = modelPath + ", " + labelPath;
+            }
+            Log.w(TAG, "Extra predictor failed to load from " + paths
+                + ", using only the SDK predictor (tuning is not applied)", e);
+        } finally {
+            if (predictor == null) {
+                synchronized (this) {
+                    live--;
+                    checkedOut--;
+                    if (createPrimary) {
+                        primaryActive = false;
+                    }
+                    notifyAll();
+                }
+            }
+        }
+        if (predictor == null) {
+            return acquire(priority);
+        }
+        Log.d(TAG, "Created " + (createPrimary ? "primary" : "pooled") + " predictor, live=" + live);
+        return new Lease(predictor, createPrimary, createGeneration);
+    }
+
+    /**
+     * Return a predictor to the pool
+     */
+    void release(Lease lease) {
+        boolean discard;
+        synchronized (this) {
+            checkedOut--;
+            discard = lease.generation != generation || draining;
+            if (discard) {
+                live = Math.max(0, live - 1);
+                if (lease.primary) {
+                    primaryActive = false;
+                }
+            } else {
+                lease.lastUsed = System.currentTimeMillis();
+                // Primary goes to the front so it is reused first and secondaries age out
+                if (lease.primary) {
+                    idle.addFirst(lease);
+                } else {
+                    idle.addLast(lease);
+                }
+            }
+            notifyAll();
+        }
+        if (discard) {
+            unload(lease);
+        }
+    }
+
+    boolean drain() {
+        return drain(false);
+    }
+
+    /**
+     * Release every predictor, waiting briefly for checked out ones to come back
+     * Returns false if some were still in use at the timeout; those are unloaded when they are released.
+     * releaseSdk also releases an SDK predictor loaded outside the pool (by the scanner), but only
+     * after a complete drain and before new acquires are let in, so no recognition can be using it
+     */
+    boolean drain(boolean releaseSdk) {
+        List<Lease> toUnload = new ArrayList<>();
+        boolean complete;
+        synchronized (this) {
+            draining = true;
+            try {
+                long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MS;
+                while (checkedOut > 0) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        Log.w(TAG, "Drain timed out with " + checkedOut + " predictor(s) in use");
+                        break;
+                    }
+                    wait(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            complete = checkedOut == 0;
+            toUnload.addAll(idle);
+            idle.clear();
+            live = checkedOut;
+            generation++;
+            for (Lease lease : toUnload) {
+                if (lease.primary) {
+                    primaryActive = false;
+                }
+            }
+        }
+        try {
+            for (Lease lease : toUnload) {
+                unload(lease);
+            }
+            // A primary lease was unloaded above; only an SDK predictor the pool never owned is left
+            if (releaseSdk && complete && PredictorManager.getInstance().isInitialized()) {
+                PredictorManager.getInstance().release();
+            }
+        } finally {
+            synchronized (this) {
+                draining = false;
+                notifyAll();
+            }
+        }
+        Log.i(TAG, "Pool drained, released " + toUnload.size() + " predictor(s)");
+        return complete;
+    }
+
+    /**
+     * Unload secondary predictors that have been idle longer than the timeout
+     */
+    void trimIdle() {
+        List<Lease> toUnload = new ArrayList<>();
+        synchronized (this) {
+            long cutoff = System.currentTimeMillis() - idleTimeoutMs;
+            for (Lease lease : new ArrayList<>(idle)) {
+                if (!lease.primary && lease.lastUsed < cutoff) {
+                    idle.remove(lease);
+                    live--;
+                    toUnload.add(lease);
+                }
+            }
+        }
+        for (Lease lease : toUnload) {
+            unload(lease);
+        }
+        if (!toUnload.isEmpty()) {
+            Log.d(TAG, "Released " + toUnload.size() + " idle predictor(s)");
+        }
+    }
+
+    /**
+     * Unload idle predictors now, e.g. under memory pressure; checked out ones are kept
+     * and the pool loads new ones on the next acquire
+     */
+    int releaseIdle(boolean includePrimary) {
+        List<Lease> toUnload = new ArrayList<>();
+        synchronized (this) {
+            for (Lease lease : new ArrayList<>(idle)) {
+                if (includePrimary || !lease.primary) {
+                    idle.remove(lease);
+                    live--;
+                    if (lease.primary) {
+                        primaryActive = false;
+                    }
+                    toUnload.add(lease);
+                }
+            }
+            notifyAll();
+        }
+        for (Lease lease : toUnload) {
+            unload(lease);
+        }
+        if (!toUnload.isEmpty()) {
+            Log.i(TAG, "Released " + toUnload.size() + " predictor(s) under memory pressure");
+        }
+        return toUnload.size();
+    }
+
+    /**
+     * Stop the idle reaper and release everything
+     */
+    void shutdown() {
+        reaper.shutdownNow();
+        drain();
+    }
+
+    /**
+     * Identifies the loaded model files, changes when modelPath/labelPath are reconfigured
+     */
+    synchronized String modelTag() {
+        return modelPath + "|" + labelPath;
+    }
+
+    /**
+     * Whether any predictor is currently loaded
+     */
+    synchronized boolean isLoaded() {
+        return live > 0;
+    }
+    
+    synchronized int getMaxSize() {
+        return maxSize;
+    }
+    
+    synchronized JSONObject stats() throws JSONException {
+        JSONObject result = new JSONObject();
+        result.put("maxSize", maxSize);
+        result.put("cpuThreads", effectiveThreads());
+        result.put("powerMode", powerMode);
+        result.put("useGPU", useGpu);
+        result.put("live", live);
+        result.put("extraPredictors", !standaloneFailed);
+        result.put("idle", idle.size());
+        result.put("inUse", checkedOut);
+        result.put("idleTimeoutMs", idleTimeoutMs);
+        return result;
+    }
+
+    private Predictor loadPrimary() {
+        PredictorManager manager = PredictorManager.getInstance();
+        if (!manager.isInitialized()) {
+            boolean initialized = manager.init(context);
+            if (!initialized) {
+                throw new IllegalStateException("Failed to initialize OCR predictor");
+            }
+        }
+        Predictor predictor = manager.getPredictor();
+        if (predictor == null) {
+            throw new IllegalStateException("OCR predictor not available");
+        }
+        return predictor;
+    }
+
+    private Predictor loadSecondary() {
+        int threads;
+        String mode;
+        boolean gpu;
+        synchronized (this) {
+            threads = effectiveThreads();
+            mode = powerMode;
+            gpu = useGpu;
+        }
+        return loadStandalone(threads, mode, gpu);
+    }
+    
+    /**
+     * Load a predictor outside the pool with the configured model files, caller releases it
+     */
+    Predictor loadStandalone(int threads, String mode, boolean gpu) {
+        String model;
+        String label;
+        synchronized (this) {
+            model = modelPath;
+            label = labelPath;
+        }
+        Predictor predictor = new Predictor();
+        if (!predictor.init(context, model, label, gpu ? 1 : 0, threads, mode)) {
+            throw new IllegalStateException("Failed to initialize OCR predictor");
+        }
+        return predictor;
+    }
+    
+    /**
+     * Predictors that may be live at once; one when only the SDK predictor can be loaded
+     */
+    private int capacity() {
+        return standaloneFailed ? 1 : maxSize;
+    }
+    
+    private int effectiveThreads() {
+        return cpuThreads > 0 ? cpuThreads : Math.max(1, Runtime.getRuntime().availableProcessors() / maxSize);
+    }
+
+    private void unload(Lease lease) {
+        try {
+            if (lease.primary) {
+                PredictorManager.getInstance().release();
+            } else {
+                lease.predictor.releaseModel();
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error releasing predictor", e);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.eov.cordova.watermeter;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.math.BigInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Post-processing and plausibility check for a recognized meter reading
+ * Normalizes common OCR letter/digit confusions, then scores the candidate against the
+ * meter's constraints (digit count, previous reading, max plausible delta).
+ */
+final class ReadingValidator {
+
+    static final int DEFAULT_DECIMAL_PLACES = 3;
+    static final double DEFAULT_MIN_CONFIDENCE = 0.7;
+
+    // Each substituted or dropped character makes the reading less trustworthy
+    private static final double SUBSTITUTION_PENALTY = 0.05;
+    private static final double DROPPED_PENALTY = 0.05;
+    private static final double CONSTRAINT_PENALTY = 0.3;
+    // Unit printed after the counter; its letters and the 3 of m3 are not reading digits
+    private static final Pattern UNIT_SUFFIX = Pattern.compile(
+        "(?:\\s*m\\s*\\^?\\s*[3\u00B3]|\\s+(?:l|lit|l\u00EDt|litre|liter))\\s*$", Pattern.CASE_INSENSITIVE);
+
+    static final String ISSUE_EMPTY = "empty";
+    static final String ISSUE_LOW_CONFIDENCE = "lowConfidence";
+    static final String ISSUE_TOO_FEW_DIGITS = "tooFewDigits";
+    static final String ISSUE_TOO_MANY_DIGITS = "tooManyDigits";
+    static final String ISSUE_BELOW_PREVIOUS = "belowPrevious";
+    static final String ISSUE_DELTA_TOO_LARGE = "deltaTooLarge";
+    static final String ISSUE_DECIMAL_MISMATCH = "decimalMismatch";
+
+    private final int digitCount;
+    private final int decimalPlaces;
+    private final boolean decimalPlacesSet;
+    private final BigInteger previousReading;
+    private final BigInteger maxDelta;
+    private final double minConfidence;
+
+    private ReadingValidator(int digitCount, int decimalPlaces, boolean decimalPlacesSet, BigInteger previousReading,
+                             BigInteger maxDelta, double minConfidence) {
+        this.digitCount = digitCount;
+        this.decimalPlaces = decimalPlaces;
+        this.decimalPlacesSet = decimalPlacesSet;
+        this.previousReading = previousReading;
+        this.maxDelta = maxDelta;
+        this.minConfidence = minConfidence;
+    }
+
+    /**
+     * Constraints from options.meter: digitCount, decimalPlaces, previousReading, maxDelta, minConfidence
+     * Readings are compared as raw digit strings, so previousReading and maxDelta use the same units.
+     * A top-level options.minConfidence (the scan option) applies when meter has none
+     */
+    static ReadingValidator fromOptions(JSONObject options) {
+        JSONObject meter = options != null ? options.optJSONObject("meter") : null;
+        if (meter == null) {
+            meter = new JSONObject();
+        }
+        double minConfidence = options != null
+            ? options.optDouble("minConfidence", DEFAULT_MIN_CONFIDENCE) : DEFAULT_MIN_CONFIDENCE;
+        return new ReadingValidator(
+            Math.max(0, meter.optInt("digitCount", 0)),
+            Math.max(0, meter.optInt("decimalPlaces", DEFAULT_DECIMAL_PLACES)),
+            meter.has("decimalPlaces"),
+            parseDigits(meter.optString("previousReading", "")),
+            parseDigits(meter.optString("maxDelta", "")),
+            meter.optDouble("minConfidence", minConfidence));
+    }
+
+    /**
+     * Add reading, formattedReading, isReliable, score and issues to a result holding text/confidence
+     * The raw OCR text stays in text. A trailing unit (m3, l) is ignored. A decimal point or comma
+     * between digits sets the decimal places of formattedReading; if that disagrees with an explicit
+     * meter.decimalPlaces the reading is unreliable
+     */
+    void apply(JSONObject result) throws JSONException {
+        String text = UNIT_SUFFIX.matcher(result.optString("text", "")).replaceFirst("");
+        double confidence = result.optDouble("confidence", 0);
+        result.remove("delta");
+        result.remove("rollover");
+
+        StringBuilder digits = new StringBuilder(text.length());
+        int substituted = 0;
+        int dropped = 0;
+        // Digits before the last decimal separator that follows a digit, -1 if there is none
+        int fractionStart = -1;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            char digit = toDigit(c);
+            if (digit == 0) {
+                if (isDecimalSeparator(c) && digits.length() > 0) {
+                    fractionStart = digits.length();
+                } else if (!isSeparator(c)) {
+                    dropped++;
+                }
+                continue;
+            }
+            if (digit != c) {
+                substituted++;
+            }
+            digits.append(digit);
+        }
+        String reading = digits.toString();
+        int places = fractionStart >= 0 && fractionStart < reading.length()
+            ? reading.length() - fractionStart : decimalPlaces;
+
+        JSONArray issues = new JSONArray();
+        double score = confidence - substituted * SUBSTITUTION_PENALTY - dropped * DROPPED_PENALTY;
+        if (reading.isEmpty()) {
+            issues.put(ISSUE_EMPTY);
+            score = 0;
+        }
+        if (digitCount > 0 && !reading.isEmpty()) {
+            if (reading.length() < digitCount) {
+                issues.put(ISSUE_TOO_FEW_DIGITS);
+                score *= CONSTRAINT_PENALTY;
+            } else if (reading.length() > digitCount) {
+                issues.put(ISSUE_TOO_MANY_DIGITS);
+                score *= CONSTRAINT_PENALTY;
+            }
+        }
+
+        if (decimalPlacesSet && places != decimalPlaces) {
+            // "123.45" against decimalPlaces 3: the digit string is in other units than previousReading
+            issues.put(ISSUE_DECIMAL_MISMATCH);
+            score *= CONSTRAINT_PENALTY;
+        }
+
+        boolean rollover = false;
+        if (previousReading != null && !reading.isEmpty()) {
+            BigInteger value = new BigInteger(reading);
+            BigInteger delta = value.subtract(previousReading);
+            if (delta.signum() < 0 && digitCount > 0 && maxDelta != null) {
+                // The counter may have wrapped past 99..9 since the previous reading
+                BigInteger wrapped = delta.add(BigInteger.TEN.pow(digitCount));
+                if (wrapped.signum() >= 0 && wrapped.compareTo(maxDelta) <= 0) {
+                    delta = wrapped;
+                    rollover = true;
+                }
+            }
+            if (delta.signum() < 0) {
+                issues.put(ISSUE_BELOW_PREVIOUS);
+                score *= CONSTRAINT_PENALTY;
+            } else if (maxDelta != null && delta.compareTo(maxDelta) > 0) {
+                issues.put(ISSUE_DELTA_TOO_LARGE);
+                score *= CONSTRAINT_PENALTY;
+            }
+            result.put("delta", delta.toString());
+        }
+
+        score = Math.max(0, Math.min(1, score));
+        if (issues.length() == 0 && score < minConfidence) {
+            issues.put(ISSUE_LOW_CONFIDENCE);
+        }
+
+        result.put("reading", reading);
+        result.put("formattedReading", format(reading, places));
+        result.put("isReliable", issues.length() == 0);
+        result.put("score", Math.round(score * 1000) / 1000.0);
+        result.put("issues", issues);
+        if (rollover) {
+            result.put("rollover", true);
+        }
+    }
+
+    /**
+     * Same output as WaterMeter.formatReading in JS
+     */
+    static String format(String reading, int decimalPlaces) {
+        if (decimalPlaces <= 0 || reading.length() <= decimalPlaces) {
+            return reading;
+        }
+        String intPart = reading.substring(0, reading.length() - decimalPlaces).replaceFirst("^0+", "");
+        return (intPart.isEmpty() ? "0" : intPart) + "." + reading.substring(reading.length() - decimalPlaces);
+    }
+
+    /**
+     * Digit for an OCR character, mapping the usual letter confusions; 0 when it is not a digit
+     * Other letters are dropped (and penalized) rather than guessed, so noise does not become digits
+     */
+    private static char toDigit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c;
+        }
+        switch (c) {
+            case 'O':
+            case 'o':
+                return '0';
+            case 'I':
+            case 'l':
+                return '1';
+            case 'S':
+                return '5';
+            case 'B':
+                return '8';
+            default:
+                return 0;
+        }
+    }
+
+    private static boolean isDecimalSeparator(char c) {
+        return c == '.' || c == ',';
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == ' ' || isDecimalSeparator(c) || c == '-' || c == '_' || c == '\'';
+    }
+
+    private static BigInteger parseDigits(String value) {
+        String digits = value.replaceAll("[^0-9]", "");
+        return digits.isEmpty() ? null : new BigInteger(digits);
+    }
+}
@@ -0,0 +1,174 @@
+package com.eov.cordova.watermeter;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-memory latency and memory histograms for the recognition path
+ * Each stage keeps a ring of the most recent samples for percentiles plus all-time count/mean/max.
+ */
+final class RecognitionMetrics {
+
+    static final String STAGE_DECODE = "decode";
+    static final String STAGE_ACQUIRE = "acquire";
+    static final String STAGE_SET_INPUT = "setInput";
+    static final String STAGE_INFERENCE = "inference";
+    static final String STAGE_EXTRACT = "extract";
+    static final String STAGE_TOTAL = "total";
+
+    private static final int WINDOW = 1024;
+
+    /**
+     * Per-recognition stage timings, filled in as the call moves through the pipeline
+     */
+    static final class Timings {
+        private long lastNanos = System.nanoTime();
+        private final LinkedHashMap<String, Long> stages = new LinkedHashMap<>();
+        long bitmapBytes;
+
+        /**
+         * Close the current stage, attributing the time since the previous mark to it
+         */
+        void mark(String stage) {
+            long now = System.nanoTime();
+            Long previous = stages.get(stage);
+            stages.put(stage, (previous != null ? previous : 0) + (now - lastNanos));
+            lastNanos = now;
+        }
+
+        /**
+         * Record a stage measured elsewhere, e.g. on a decode worker
+         */
+        void add(String stage, long nanos) {
+            Long previous = stages.get(stage);
+            stages.put(stage, (previous != null ? previous : 0) + nanos);
+        }
+
+        JSONObject toJson() throws JSONException {
+            JSONObject json = new JSONObject();
+            for (Map.Entry<String, Long> entry : stages.entrySet()) {
+                json.put(entry.getKey() + "Ms", toMillis(entry.getValue()));
+            }
+            json.put(STAGE_TOTAL + "Ms", toMillis(sumNanos()));
+            json.put("bitmapBytes", bitmapBytes);
+            return json;
+        }
+
+        private long sumNanos() {
+            long sum = 0;
+            for (Long nanos : stages.values()) {
+                sum += nanos;
+            }
+            return sum;
+        }
+    }
+
+    /**
+     * Ring buffer of recent samples with all-time aggregates
+     */
+    private static final class Histogram {
+        private final long[] samples = new long[WINDOW];
+        private int next;
+        private long count;
+        private long sum;
+        private long max;
+
+        void add(long value) {
+            samples[next] = value;
+            next = (next + 1) % WINDOW;
+            count++;
+            sum += value;
+            max = Math.max(max, value);
+        }
+
+        JSONObject toJson(boolean nanos) throws JSONException {
+            int size = (int) Math.min(count, WINDOW);
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            JSONObject json = new JSONObject();
+            json.put("count", count);
+            json.put("mean", count > 0 ? scale(sum / (double) count, nanos) : 0);
+            json.put("p50", scale(percentile(sorted, 0.50), nanos));
+            json.put("p95", scale(percentile(sorted, 0.95), nanos));
+            json.put("p99", scale(percentile(sorted, 0.99), nanos));
+            json.put("max", scale(max, nanos));
+            return json;
+        }
+
+        private static double percentile(long[] sorted, double p) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+        }
+
+        private static double scale(double value, boolean nanos) {
+            return nanos ? value / 1000000.0 : value;
+        }
+    }
+
+    private final LinkedHashMap<String, Histogram> stages = new LinkedHashMap<>();
+    private Histogram bitmapBytes = new Histogram();
+    private long errors;
+    private long startedAt = System.currentTimeMillis();
+
+    synchronized void record(Timings timings) {
+        long total = 0;
+        for (Map.Entry<String, Long> entry : timings.stages.entrySet()) {
+            histogram(entry.getKey()).add(entry.getValue());
+            total += entry.getValue();
+        }
+        histogram(STAGE_TOTAL).add(total);
+        if (timings.bitmapBytes > 0) {
+            bitmapBytes.add(timings.bitmapBytes);
+        }
+    }
+
+    synchronized void recordError() {
+        errors++;
+    }
+
+    synchronized void reset() {
+        stages.clear();
+        bitmapBytes = new Histogram();
+        errors = 0;
+        startedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Snapshot as JSON: stage latencies in milliseconds, bitmap sizes in bytes
+     */
+    synchronized JSONObject snapshot() throws JSONException {
+        JSONObject stageJson = new JSONObject();
+        for (Map.Entry<String, Histogram> entry : stages.entrySet()) {
+            stageJson.put(entry.getKey(), entry.getValue().toJson(true));
+        }
+        Histogram total = stages.get(STAGE_TOTAL);
+
+        JSONObject json = new JSONObject();
+        json.put("count", total != null ? total.count : 0);
+        json.put("errors", errors);
+        json.put("since", startedAt);
+        json.put("stages", stageJson);
+        json.put("bitmapBytes", bitmapBytes.toJson(false));
+        return json;
+    }
+
+    private Histogram histogram(String stage) {
+        Histogram histogram = stages.get(stage);
+        if (histogram == null) {
+            histogram = new Histogram();
+            stages.put(stage, histogram);
+        }
+        return histogram;
+    }
+
+    private static double toMillis(long nanos) {
+        return Math.round(nanos / 10000.0) / 100.0;
+    }
+}
@@ -0,0 +1,245 @@
+package com.eov.cordova.watermeter;
+
+import android.util.Log;
+
+import org.apache.cordova.CallbackContext;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plugin-owned recognition job queue
+ * Interactive jobs run before background ones, queued jobs can be cancelled before they
+ * decode anything, and the queue rejects work beyond maxQueued instead of growing unbounded.
+ */
+final class RecognitionScheduler {
+
+    private static final String TAG = "WaterMeterScheduler";
+    static final int PRIORITY_INTERACTIVE = 0;
+    static final int PRIORITY_BACKGROUND = 1;
+    static final int DEFAULT_MAX_QUEUED = 500;
+    private static final int FINISHED_HISTORY = 1000;
+
+    static final String STATE_QUEUED = "queued";
+    static final String STATE_RUNNING = "running";
+    static final String STATE_COMPLETED = "completed";
+    static final String STATE_CANCELLED = "cancelled";
+
+    /**
+     * Work done by a job; implementations check job.isCancelled() between stages
+     */
+    interface Task {
+        void run(Job job) throws Exception;
+    }
+
+    /**
+     * A queued or running recognition
+     */
+    final class Job implements Runnable, Comparable<Job> {
+        final String id;
+        final int priority;
+        final CallbackContext callbackContext;
+        private final long sequence;
+        private final Task task;
+        private final long queuedAt = System.currentTimeMillis();
+        private volatile String state = STATE_QUEUED;
+        private volatile boolean cancelled;
+        private volatile long startedAt;
+        private volatile long finishedAt;
+
+        private Job(String id, int priority, CallbackContext callbackContext, Task task) {
+            this.id = id;
+            this.priority = priority;
+            this.callbackContext = callbackContext;
+            this.task = task;
+            this.sequence = sequenceCounter.incrementAndGet();
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                // Cancelled after a worker dequeued it but before it started
+                finish(this, STATE_CANCELLED);
+                callbackContext.error("Cancelled");
+                return;
+            }
+            state = STATE_RUNNING;
+            startedAt = System.currentTimeMillis();
+            try {
+                task.run(this);
+            } catch (Exception e) {
+                Log.e(TAG, "Job " + id + " failed", e);
+                callbackContext.error("Error: " + e.getMessage());
+            } finally {
+                finish(this, cancelled ? STATE_CANCELLED : STATE_COMPLETED);
+            }
+        }
+
+        @Override
+        public int compareTo(Job other) {
+            if (priority != other.priority) {
+                return priority < other.priority ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : (sequence > other.sequence ? 1 : 0);
+        }
+
+        JSONObject toJson() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("jobId", id);
+            json.put("state", state);
+            json.put("priority", priority == PRIORITY_INTERACTIVE ? "interactive" : "background");
+            json.put("queuedAt", queuedAt);
+            if (startedAt > 0) {
+                json.put("startedAt", startedAt);
+            }
+            if (finishedAt > 0) {
+                json.put("finishedAt", finishedAt);
+            }
+            return json;
+        }
+    }
+
+    private final AtomicLong sequenceCounter = new AtomicLong();
+    private final AtomicLong idCounter = new AtomicLong();
+    private final ThreadPoolExecutor executor;
+    private final Map<String, Job> active = new ConcurrentHashMap<>();
+    private final LinkedHashMap<String, Job> finished = new LinkedHashMap<>();
+    private volatile int maxQueued = DEFAULT_MAX_QUEUED;
+
+    RecognitionScheduler(int workers) {
+        executor = new ThreadPoolExecutor(workers, workers, 30, TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Match worker count to the number of predictors that can run at once
+     */
+    synchronized void setWorkers(int workers) {
+        int count = Math.max(1, workers);
+        if (count > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(count);
+            executor.setCorePoolSize(count);
+        } else {
+            executor.setCorePoolSize(count);
+            executor.setMaximumPoolSize(count);
+        }
+    }
+
+    void setMaxQueued(int maxQueued) {
+        this.maxQueued = Math.max(1, maxQueued);
+    }
+
+    static int parsePriority(JSONObject options, int defaultPriority) {
+        String value = options != null ? options.optString("priority", "") : "";
+        if ("background".equals(value)) {
+            return PRIORITY_BACKGROUND;
+        }
+        if ("interactive".equals(value)) {
+            return PRIORITY_INTERACTIVE;
+        }
+        return defaultPriority;
+    }
+
+    /**
+     * Queue a job; rejects when the queue is full or the id is already active
+     */
+    Job submit(String jobId, int priority, CallbackContext callbackContext, Task task) {
+        String id = jobId != null && !jobId.isEmpty() ? jobId : "job-" + idCounter.incrementAndGet();
+        if (executor.getQueue().size() >= maxQueued) {
+            throw new RejectedExecutionException("Recognition queue is full (" + maxQueued + " jobs)");
+        }
+        Job job = new Job(id, priority, callbackContext, task);
+        if (active.putIfAbsent(id, job) != null) {
+            throw new RejectedExecutionException("Job id already in use: " + id);
+        }
+        executor.execute(job);
+        return job;
+    }
+
+    /**
+     * Register a job that runs on its own thread (e.g. a batch) so it can be queried and cancelled
+     * Rejects an id that is already active
+     */
+    Job track(String jobId, int priority, CallbackContext callbackContext) {
+        String id = jobId != null && !jobId.isEmpty() ? jobId : "job-" + idCounter.incrementAndGet();
+        Job job = new Job(id, priority, callbackContext, null);
+        job.state = STATE_RUNNING;
+        job.startedAt = System.currentTimeMillis();
+        if (active.putIfAbsent(id, job) != null) {
+            throw new RejectedExecutionException("Job id already in use: " + id);
+        }
+        return job;
+    }
+
+    /**
+     * Cancel a job: queued jobs are dropped and answered right away, running jobs stop at the next stage
+     */
+    boolean cancel(String jobId) {
+        Job job = active.get(jobId);
+        if (job == null) {
+            return false;
+        }
+        job.cancelled = true;
+        if (executor.remove(job)) {
+            finish(job, STATE_CANCELLED);
+            job.callbackContext.error("Cancelled");
+        }
+        return true;
+    }
+
+    /**
+     * Mark a job finished and move it into the bounded history
+     */
+    void finish(Job job, String state) {
+        job.state = state;
+        job.finishedAt = System.currentTimeMillis();
+        active.remove(job.id);
+        synchronized (finished) {
+            finished.put(job.id, job);
+            Iterator<String> it = finished.keySet().iterator();
+            while (finished.size() > FINISHED_HISTORY && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * State of one job, or null if unknown
+     */
+    JSONObject state(String jobId) throws JSONException {
+        Job job = active.get(jobId);
+        if (job == null) {
+            synchronized (finished) {
+                job = finished.get(jobId);
+            }
+        }
+        return job != null ? job.toJson() : null;
+    }
+
+    JSONObject stats() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("queued", executor.getQueue().size());
+        json.put("running", executor.getActiveCount());
+        json.put("workers", executor.getCorePoolSize());
+        json.put("maxQueued", maxQueued);
+        return json;
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,281 @@
+package com.eov.cordova.watermeter;
+
+import android.util.Log;
+import android.util.LruCache;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Two-tier cache of recognition results
+ * Keyed by a hash of the encoded image bytes plus the options that change the pipeline output,
+ * so re-submitting the same photo skips decode and inference. Memory tier is an LRU of recent
+ * results; disk tier keeps one small JSON file per entry and survives app restarts.
+ */
+final class ResultCache {
+
+    private static final String TAG = "WaterMeterResultCache";
+    private static final String SUFFIX = ".json";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    static final int DEFAULT_MEMORY_ENTRIES = 200;
+    static final int DEFAULT_DISK_ENTRIES = 5000;
+    static final long DEFAULT_MAX_AGE_MS = 7L * 24 * 60 * 60 * 1000;
+
+    // Options that influence the recognized text; anything else (timings, cache) is ignored
+    private static final String[] KEY_OPTIONS = {
+        "maxSideLength", "lowMemory", "roi", "runDetection", "runClassification"
+    };
+
+    private static final class Entry {
+        final String json;
+        final long createdAt;
+
+        Entry(String json, long createdAt) {
+            this.json = json;
+            this.createdAt = createdAt;
+        }
+    }
+
+    private final File directory;
+    private boolean enabled;
+    private int maxDiskEntries = DEFAULT_DISK_ENTRIES;
+    private long maxAgeMs = DEFAULT_MAX_AGE_MS;
+    private final LruCache<String, Entry> memory = new LruCache<>(DEFAULT_MEMORY_ENTRIES);
+    private boolean diskLoaded;
+    private int hits;
+    private int diskHits;
+    private int misses;
+
+    // Insertion-ordered index of disk entries: key -> created time
+    private final LinkedHashMap<String, Long> diskIndex = new LinkedHashMap<>();
+
+    ResultCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Apply options: enabled, maxEntries (memory), maxDiskEntries, maxAgeMs
+     */
+    synchronized void configure(JSONObject options) {
+        enabled = options.optBoolean("enabled", enabled);
+        int memoryEntries = Math.max(1, options.optInt("maxEntries", memory.maxSize()));
+        if (memoryEntries != memory.maxSize()) {
+            memory.resize(memoryEntries);
+        }
+        maxDiskEntries = Math.max(0, options.optInt("maxDiskEntries", maxDiskEntries));
+        maxAgeMs = Math.max(0, options.optLong("maxAgeMs", maxAgeMs));
+        trimDisk(System.currentTimeMillis());
+    }
+
+    synchronized boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Cache key: MD5 of the encoded bytes, the output-relevant options and the model tag
+     */
+    static String key(byte[] data, int offset, int length, JSONObject options, String modelTag) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            digest.update(data, offset, length);
+            StringBuilder params = new StringBuilder(modelTag);
+            for (String name : KEY_OPTIONS) {
+                Object value = options != null ? options.opt(name) : null;
+                params.append('|').append(name).append('=').append(value != null ? value.toString() : "");
+            }
+            digest.update(params.toString().getBytes(UTF8));
+            byte[] hash = digest.digest();
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 not available", e);
+        }
+    }
+
+    /**
+     * Cached result marked with cached: true, or null on miss or expiry
+     */
+    synchronized JSONObject get(String key) {
+        long now = System.currentTimeMillis();
+        Entry entry = memory.get(key);
+        if (entry != null && !isExpired(entry.createdAt, now)) {
+            hits++;
+            return toResult(entry.json);
+        }
+
+        ensureDiskLoaded();
+        Long createdAt = diskIndex.get(key);
+        if (createdAt != null && !isExpired(createdAt, now)) {
+            try {
+                String json = new String(WaterMeterPlugin.readFile(fileFor(key)), UTF8);
+                memory.put(key, new Entry(json, createdAt));
+                hits++;
+                diskHits++;
+                return toResult(json);
+            } catch (IOException e) {
+                Log.w(TAG, "Dropping unreadable cache entry " + key);
+                removeDisk(key);
+            }
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Store a result in both tiers
+     */
+    synchronized void put(String key, JSONObject result) {
+        JSONObject copy;
+        try {
+            copy = new JSONObject(result.toString());
+        } catch (JSONException e) {
+            return;
+        }
+        copy.remove("timings");
+        copy.remove("cached");
+        String json = copy.toString();
+        long now = System.currentTimeMillis();
+        memory.put(key, new Entry(json, now));
+
+        if (maxDiskEntries == 0) {
+            return;
+        }
+        ensureDiskLoaded();
+        try (OutputStream out = new FileOutputStream(fileFor(key))) {
+            out.write(json.getBytes(UTF8));
+            diskIndex.remove(key);
+            diskIndex.put(key, now);
+            trimDisk(now);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to persist cache entry: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Drop every entry, e.g. after reset or a model change
+     */
+    synchronized void clear() {
+        memory.evictAll();
+        ensureDiskLoaded();
+        for (String key : diskIndex.keySet()) {
+            fileFor(key).delete();
+        }
+        diskIndex.clear();
+    }
+
+    /**
+     * Shrink the memory tier under memory pressure, keeping this fraction of its capacity
+     * The disk tier is untouched, so dropped entries are still served from disk
+     */
+    synchronized void trimMemory(float keepFraction) {
+        int keep = (int) (memory.maxSize() * keepFraction);
+        if (keep <= 0) {
+            memory.evictAll();
+        } else {
+            memory.trimToSize(keep);
+        }
+    }
+
+    synchronized JSONObject stats() throws JSONException {
+        ensureDiskLoaded();
+        JSONObject result = new JSONObject();
+        result.put("enabled", enabled);
+        result.put("hits", hits);
+        result.put("diskHits", diskHits);
+        result.put("misses", misses);
+        int lookups = hits + misses;
+        result.put("hitRate", lookups > 0 ? hits / (double) lookups : 0);
+        result.put("memoryEntries", memory.size());
+        result.put("maxEntries", memory.maxSize());
+        result.put("diskEntries", diskIndex.size());
+        result.put("maxDiskEntries", maxDiskEntries);
+        result.put("maxAgeMs", maxAgeMs);
+        return result;
+    }
+
+    private boolean isExpired(long createdAt, long now) {
+        return maxAgeMs > 0 && now - createdAt > maxAgeMs;
+    }
+
+    private static JSONObject toResult(String json) {
+        try {
+            JSONObject result = new JSONObject(json);
+            result.put("cached", true);
+            return result;
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Remove expired entries, then the oldest ones beyond maxDiskEntries
+     */
+    private void trimDisk(long now) {
+        if (!diskLoaded) {
+            return;
+        }
+        Iterator<Map.Entry<String, Long>> it = diskIndex.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            if (diskIndex.size() <= maxDiskEntries && !isExpired(eldest.getValue(), now)) {
+                break;
+            }
+            fileFor(eldest.getKey()).delete();
+            it.remove();
+        }
+    }
+
+    private void removeDisk(String key) {
+        diskIndex.remove(key);
+        fileFor(key).delete();
+    }
+
+    private void ensureDiskLoaded() {
+        if (diskLoaded) {
+            return;
+        }
+        diskLoaded = true;
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.w(TAG, "Cannot create result cache dir: " + directory);
+            return;
+        }
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long diff = a.lastModified() - b.lastModified();
+                return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+            }
+        });
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(SUFFIX)) {
+                diskIndex.put(name.substring(0, name.length() - SUFFIX.length()), file.lastModified());
+            }
+        }
+        trimDisk(System.currentTimeMillis());
+    }
+
+    private File fileFor(String key) {
+        return new File(directory, key + SUFFIX);
+    }
+}
@@ -0,0 +1,88 @@
+package com.eov.cordova.watermeter;
+
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * State of a continuous scan session
+ * Counts accepted readings and drops repeats of the same reading inside the dedupe window,
+ * so pointing the camera at the same meter twice does not produce two entries.
+ */
+final class ScanSession {
+
+    static final long DEFAULT_DEDUPE_WINDOW_MS = 10000;
+
+    final JSONObject scanOptions;
+    final int maxReadings;
+    final long dedupeWindowMs;
+    final boolean retryUnreliable;
+    private int accepted;
+    private int duplicates;
+    private int rejected;
+    private final Map<String, Long> lastSeen = new HashMap<>();
+
+    ScanSession(JSONObject options) {
+        this.scanOptions = options;
+        this.maxReadings = Math.max(0, options.optInt("maxReadings", 0));
+        this.dedupeWindowMs = Math.max(0, options.optLong("dedupeWindowMs", DEFAULT_DEDUPE_WINDOW_MS));
+        this.retryUnreliable = options.optBoolean("retryUnreliable", false);
+    }
+
+    /**
+     * Record a reading; false if the same reading was accepted within the dedupe window
+     * Empty reads are neither; callers check isEmpty() first and reject() them
+     */
+    boolean accept(String text, long now) {
+        String key = normalize(text);
+        if (key.isEmpty()) {
+            return false;
+        }
+        Iterator<Map.Entry<String, Long>> it = lastSeen.entrySet().iterator();
+        while (it.hasNext()) {
+            if (now - it.next().getValue() > dedupeWindowMs) {
+                it.remove();
+            }
+        }
+        if (lastSeen.containsKey(key)) {
+            duplicates++;
+            return false;
+        }
+        lastSeen.put(key, now);
+        accepted++;
+        return true;
+    }
+
+    /**
+     * True if a read has no digits and must be reported as rejected rather than passed to accept()
+     */
+    static boolean isEmpty(String text) {
+        return normalize(text).isEmpty();
+    }
+
+    void reject() {
+        rejected++;
+    }
+
+    boolean isComplete() {
+        return maxReadings > 0 && accepted >= maxReadings;
+    }
+
+    int getAccepted() {
+        return accepted;
+    }
+
+    int getDuplicates() {
+        return duplicates;
+    }
+
+    int getRejected() {
+        return rejected;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.replaceAll("\\s", "");
+    }
+}
@@ -0,0 +1,194 @@
+package com.eov.cordova.watermeter;
+
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size-bounded LRU disk cache for result thumbnails
+ * Entries are keyed by source path, modification time and size plus the thumbnail
+ * parameters, so an edited or replaced source never serves a stale thumbnail.
+ */
+final class ThumbnailCache {
+
+    private static final String TAG = "WaterMeterThumbs";
+    private static final String SUFFIX = ".jpg";
+    static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+
+    private final File directory;
+    private long maxBytes;
+    private long totalBytes;
+    private boolean loaded;
+    private int hits;
+    private int misses;
+
+    // Access-ordered: iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+    ThumbnailCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Cache key for a source file and thumbnail parameters
+     */
+    static String key(File source, int maxSide, int quality) {
+        String raw = source.getAbsolutePath() + '|' + source.lastModified() + '|' + source.length()
+            + '|' + maxSide + '|' + quality;
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(raw.getBytes(Charset.forName("UTF-8")));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(raw.hashCode());
+        }
+    }
+
+    /**
+     * Cached thumbnail file, or null on miss
+     */
+    synchronized File get(String key) {
+        ensureLoaded();
+        if (entries.get(key) == null) {
+            misses++;
+            return null;
+        }
+        File file = fileFor(key);
+        if (!file.exists()) {
+            totalBytes -= entries.remove(key);
+            misses++;
+            return null;
+        }
+        // Persist recency so the LRU order survives restarts
+        file.setLastModified(System.currentTimeMillis());
+        hits++;
+        return file;
+    }
+
+    /**
+     * Store thumbnail bytes, evicting least recently used entries over the size limit
+     */
+    File put(String key, byte[] data) throws IOException {
+        synchronized (this) {
+            ensureLoaded();
+        }
+        File target = fileFor(key);
+        File temp = new File(directory, key + ".tmp" + Thread.currentThread().getId());
+        try (OutputStream out = new FileOutputStream(temp)) {
+            out.write(data);
+        }
+
+        synchronized (this) {
+            if (!temp.renameTo(target)) {
+                temp.delete();
+                throw new IOException("Failed to store thumbnail: " + target.getPath());
+            }
+            Long previous = entries.put(key, (long) data.length);
+            totalBytes += data.length - (previous != null ? previous : 0);
+            trimToSize(maxBytes);
+        }
+        return target;
+    }
+
+    /**
+     * Shrink the cache to at most the given number of bytes
+     */
+    synchronized void trimToSize(long limit) {
+        ensureLoaded();
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (totalBytes > limit && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            fileFor(eldest.getKey()).delete();
+            totalBytes -= eldest.getValue();
+            it.remove();
+        }
+    }
+
+    synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        trimToSize(maxBytes);
+    }
+
+    synchronized void clear() {
+        trimToSize(0);
+    }
+
+    /**
+     * Drop the in-memory index; files stay on disk and the index is rebuilt on next use
+     */
+    synchronized void releaseIndex() {
+        entries.clear();
+        totalBytes = 0;
+        loaded = false;
+    }
+
+    synchronized JSONObject stats() throws JSONException {
+        ensureLoaded();
+        JSONObject result = new JSONObject();
+        result.put("entries", entries.size());
+        result.put("bytes", totalBytes);
+        result.put("maxBytes", maxBytes);
+        result.put("hits", hits);
+        result.put("misses", misses);
+        return result;
+    }
+
+    /**
+     * Rebuild the in-memory index from disk, oldest access first
+     */
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.w(TAG, "Cannot create thumbnail cache dir: " + directory);
+            return;
+        }
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long diff = a.lastModified() - b.lastModified();
+                return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+            }
+        });
+        for (File file : files) {
+            String name = file.getName();
+            if (!name.endsWith(SUFFIX)) {
+                // Leftover temp file from an interrupted write
+                file.delete();
+                continue;
+            }
+            entries.put(name.substring(0, name.length() - SUFFIX.length()), file.length());
+            totalBytes += file.length();
+        }
+        trimToSize(maxBytes);
+    }
+
+    private File fileFor(String key) {
+        return new File(directory, key + SUFFIX);
+    }
+}
@@ -2,14 +2,18 @@ package com.eov.cordova.watermeter;
 
 import android.Manifest;
 import android.app.Activity;
+import android.content.ComponentCallbacks2;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.util.Base64;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.os.SystemClock;
 import android.util.Log;
 
 import org.apache.cordova.CallbackContext;
+import org.apache.cordova.CordovaArgs;
 import org.apache.cordova.CordovaPlugin;
 import org.apache.cordova.PluginResult;
 import org.json.JSONArray;
@@ -24,6 +28,10 @@ import com.eov.watermeter.ocr.Predictor;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Cordova Plugin for Water Meter Scanner
@@ -36,10 +44,46 @@ public class WaterMeterPlugin extends CordovaPlugin {
     private static final int REQUEST_CAMERA_SCAN = 1001;
     private static final int REQUEST_CAMERA_PERMISSION = 1002;
     private static final int REQUEST_SETTINGS = 1003;
+    private static final int WARMUP_IMAGE_WIDTH = 480;
+    private static final int WARMUP_IMAGE_HEIGHT = 160;
+    private static final String IMAGE_RESULT_BASE64 = "base64";
+    private static final String IMAGE_RESULT_PATH = "path";
+    private static final int DEFAULT_THUMBNAIL_MAX_SIDE = 320;
+    private static final int DEFAULT_THUMBNAIL_QUALITY = 70;
+    private static final String THUMBNAIL_CACHE_DIR = "watermeter-thumbnails";
+    private static final String RESULT_CACHE_DIR = "watermeter-results";
+    private static final String IMPORT_STATE_DIR = "watermeter-imports";
+    private static final String AUDIT_DIR = "watermeter-audit";
+    private static final String AUDIT_KEY_FILE = "chain.key";
     
-    private CallbackContext scanCallback;
+    // Set from the bridge thread, read by the memory callback on the main thread
+    private volatile CallbackContext scanCallback;
     private CallbackContext permissionCallback;
+    private String scanImageResult = IMAGE_RESULT_PATH;
+    private ScanSession scanSession;
+    private ReadingValidator scanValidator = ReadingValidator.fromOptions(null);
     private boolean licenseInitialized = false;
+    private PredictorPool predictorPool;
+    private ThumbnailCache thumbnailCache;
+    private final RecognitionMetrics metrics = new RecognitionMetrics();
+    private ResultCache resultCache;
+    private RecognitionScheduler scheduler;
+    private MemoryMonitor memoryMonitor;
+    private BitmapPool bitmapPool;
+    private AuditLog auditLog;
+    private String scanMeterId;
+    
+    // Predictor preload state, reported by isInitialized
+    private final Object preloadLock = new Object();
+    private volatile boolean predictorWarming = false;
+    private volatile String preloadError;
+    private volatile JSONObject lastPreload;
+    
+    @Override
+    protected void pluginInitialize() {
+        memoryMonitor = new MemoryMonitor(cordova.getActivity().getApplicationContext(), this::onMemoryPressure);
+        memoryMonitor.register();
+    }
     
     @Override
     public boolean execute(String action, JSONArray args, CallbackContext callbackContext) throws JSONException {
@@ -60,6 +104,12 @@ public class WaterMeterPlugin extends CordovaPlugin {
             return true;
         }
         
+        if (action.equals("scanSession")) {
+            JSONObject options = args.optJSONObject(0);
+            this.scanSession(options != null ? options : new JSONObject(), callbackContext);
+            return true;
+        }
+        
         if (action.equals("checkPermission")) {
             this.checkPermission(callbackContext);
             return true;
@@ -72,12 +122,122 @@ public class WaterMeterPlugin extends CordovaPlugin {
         
         // New features for parity with iOS
         if (action.equals("recognizeBase64")) {
-            this.recognizeBase64(args.getString(0), callbackContext);
+            this.recognizeBase64(args.getString(0), args.optJSONObject(1), callbackContext);
             return true;
         }
         
         if (action.equals("recognizeFile")) {
-            this.recognizeFile(args.getString(0), callbackContext);
+            this.recognizeFile(args.getString(0), args.optJSONObject(1), callbackContext);
+            return true;
+        }
+        
+        if (action.equals("recognizeBytes")) {
+            // ArrayBuffer arguments arrive as raw bytes through CordovaArgs
+            this.recognizeBytes(new CordovaArgs(args).getArrayBuffer(0), args.optJSONObject(1), callbackContext);
+            return true;
+        }
+        
+        if (action.equals("getImageBytes")) {
+            this.getImageBytes(args.getString(0), args.optJSONObject(1), callbackContext);
+            return true;
+        }
+        
+        if (action.equals("getThumbnail")) {
+            this.getThumbnail(args.getString(0), args.optJSONObject(1), callbackContext);
+            return true;
+        }
+        
+        if (action.equals("clearThumbnailCache")) {
+            this.clearThumbnailCache(callbackContext);
+            return true;
+        }
+        
+        if (action.equals("configureResultCache")) {
+            this.configureResultCache(args.optJSONObject(0), callbackContext);
+            return true;
+        }
+        
+        if (action.equals("getMetrics")) {
+            this.getMetrics(callbackContext);
+            return true;
+        }
+        
+        if (action.equals("configureBitmapPool")) {
+            this.configureBitmapPool(args.optJSONObject(0), callbackContext);
+            return true;
+        }
+        
+        if (action.equals("getMemoryStatus")) {
+            this.getMemoryStatus(callbackContext);
+            return true;
+        }
+        
+        if (action.equals("queryHistory")) {
+            this.queryHistory(args.optJSONObject(0), callbackContext);
+            return true;
+        }
+        
+        if (action.equals("exportHistory")) {
+            this.exportHistory(args.optJSONObject(0), callbackContext);
+            return true;
+        }
+        
+        if (action.equals("verifyHistory")) {
+            this.verifyHistory(callbackContext);
+            return true;
+        }
+        
+        if (action.equals("configureHistory")) {
+            this.configureHistory(args.optJSONObject(0), callbackContext);
+            return true;
+        }
+        
+        if (action.equals("resetMetrics")) {
+            this.resetMetrics(callbackContext);
+            return true;
+        }
+        
+        if (action.equals("recognizeBatch")) {
+            JSONObject options = args.optJSONObject(1);
+            this.recognizeBatch(args.getJSONArray(0), options != null ? options : new JSONObject(), callbackContext);
+            return true;
+        }
+        
+        if (action.equals("recognizeConsensus")) {
+            JSONObject options = args.optJSONObject(1);
+            this.recognizeConsensus(args.getJSONArray(0), options != null ? options : new JSONObject(), callbackContext);
+            return true;
+        }
+        
+        if (action.equals("recognizeDirectory")) {
+            JSONObject options = args.optJSONObject(1);
+            this.recognizeDirectory(args.getString(0), options != null ? options : new JSONObject(), callbackContext);
+            return true;
+        }
+        
+        if (action.equals("cancelJob")) {
+            this.cancelJob(args.getString(0), callbackContext);
+            return true;
+        }
+        
+        if (action.equals("getJobState")) {
+            this.getJobState(args.optString(0, null), callbackContext);
+            return true;
+        }
+        
+        if (action.equals("autoTune")) {
+            JSONObject options = args.optJSONObject(0);
+            this.autoTune(options != null ? options : new JSONObject(), callbackContext);
+            return true;
+        }
+        
+        if (action.equals("configurePredictorPool")) {
+            this.configurePredictorPool(args.optJSONObject(0), callbackContext);
+            return true;
+        }
+        
+        if (action.equals("preload")) {
+            this.preload(args.optJSONObject(0), callbackContext);
             return true;
         }
         
@@ -118,6 +278,7 @@ public class WaterMeterPlugin extends CordovaPlugin {
                         public void onSuccess() {
                             licenseInitialized = true;
                             Log.i(TAG, "License initialized successfully");
+                            preloadInBackground();
                             try {
                                 JSONObject result = new JSONObject();
                                 result.put("valid", true);
@@ -172,43 +333,64 @@ public class WaterMeterPlugin extends CordovaPlugin {
      */
     private void scan(JSONObject options, CallbackContext callbackContext) {
         this.scanCallback = callbackContext;
+        this.scanSession = null;
+        this.scanImageResult = options.optString("imageResult", IMAGE_RESULT_PATH);
+        this.scanValidator = ReadingValidator.fromOptions(options);
+        this.scanMeterId = options.optString("meterId", null);
+        
+        if (!checkScanPreconditions(callbackContext)) {
+            return;
+        }
+        
+        launchScanner(options, callbackContext);
+    }
+    
+    /**
+     * Start a continuous scan session
+     * The scanner is relaunched after every accepted reading while the predictor stays loaded;
+     * each reading is streamed through the kept callback until maxReadings or the user closes it
+     */
+    private void scanSession(JSONObject options, CallbackContext callbackContext) {
+        this.scanCallback = callbackContext;
+        this.scanSession = new ScanSession(options);
+        this.scanImageResult = IMAGE_RESULT_PATH;
+        this.scanValidator = ReadingValidator.fromOptions(options);
+        this.scanMeterId = options.optString("meterId", null);
+        
+        if (!checkScanPreconditions(callbackContext)) {
+            this.scanSession = null;
+            return;
+        }
         
+        // Make sure the first frame of the session does not wait for model loading
+        preloadInBackground();
+        launchScanner(options, callbackContext);
+    }
+    
+    private boolean checkScanPreconditions(CallbackContext callbackContext) {
         // Check license first
         if (!WaterMeterSDK.isLicenseValid()) {
             callbackContext.error("SDK not initialized or license invalid. Call initializeLicense() first.");
-            return;
+            return false;
         }
         
         // Check permission
         if (!hasPermission()) {
             callbackContext.error("Camera permission not granted. Call requestPermission() first.");
-            return;
+            return false;
         }
-        
-        // Launch scanner activity
+        return true;
+    }
+    
+    /**
+     * Launch scanner activity and keep the callback open for its result
+     */
+    private void launchScanner(JSONObject options, CallbackContext callbackContext) {
         cordova.getActivity().runOnUiThread(new Runnable() {
             @Override
             public void run() {
                 try {
-                    Intent intent = new Intent(cordova.getActivity(), CameraScanActivity.class);
-                    
-                    // Optional parameters
-                    if (options.has("title")) {
-                        intent.putExtra(CameraScanActivity.EXTRA_TITLE, options.getString("title"));
-                    }
-                    if (options.has("showCloseButton")) {
-                        intent.putExtra(CameraScanActivity.EXTRA_SHOW_CLOSE_BUTTON, options.getBoolean("showCloseButton"));
-                    }
-                    if (options.has("autoCloseOnResult")) {
-                        intent.putExtra(CameraScanActivity.EXTRA_AUTO_CLOSE_ON_RESULT, options.getBoolean("autoCloseOnResult"));
-                    }
-                    if (options.has("imageMaxWidth")) {
-                        intent.putExtra(CameraScanActivity.EXTRA_IMAGE_MAX_WIDTH, options.getInt("imageMaxWidth"));
-                    }
-                    if (options.has("imageMaxHeight")) {
-                        intent.putExtra(CameraScanActivity.EXTRA_IMAGE_MAX_HEIGHT, options.getInt("imageMaxHeight"));
-                    }
-                    
+                    Intent intent = createScanIntent(options);
                     cordova.startActivityForResult(WaterMeterPlugin.this, intent, REQUEST_CAMERA_SCAN);
                     
                     // Keep callback for result
@@ -218,12 +400,44 @@ public class WaterMeterPlugin extends CordovaPlugin {
                     
                 } catch (Exception e) {
                     Log.e(TAG, "Error launching scanner", e);
+                    scanSession = null;
                     callbackContext.error("Failed to launch scanner: " + e.getMessage());
                 }
             }
         });
     }
     
+    private Intent createScanIntent(JSONObject options) throws JSONException {
+        Intent intent = new Intent(cordova.getActivity(), CameraScanActivity.class);
+        
+        // Optional parameters
+        if (options.has("title")) {
+            intent.putExtra(CameraScanActivity.EXTRA_TITLE, options.getString("title"));
+        }
+        if (options.has("showCloseButton")) {
+            intent.putExtra(CameraScanActivity.EXTRA_SHOW_CLOSE_BUTTON, options.getBoolean("showCloseButton"));
+        }
+        if (scanSession != null) {
+            // Every reading has to come back to the plugin
+            intent.putExtra(CameraScanActivity.EXTRA_AUTO_CLOSE_ON_RESULT, true);
+        } else if (options.has("autoCloseOnResult")) {
+            intent.putExtra(CameraScanActivity.EXTRA_AUTO_CLOSE_ON_RESULT, options.getBoolean("autoCloseOnResult"));
+        }
+        if (options.has("imageMaxWidth")) {
+            intent.putExtra(CameraScanActivity.EXTRA_IMAGE_MAX_WIDTH, options.getInt("imageMaxWidth"));
+        }
+        if (options.has("imageMaxHeight")) {
+            intent.putExtra(CameraScanActivity.EXTRA_IMAGE_MAX_HEIGHT, options.getInt("imageMaxHeight"));
+        }
+        
+        // minConfidence has no extra either; it is enforced on the result by scanValidator
+        if (options.has("autoCapture")) {
+            // CameraScanActivity has no extra for it and follows its settings screen (openSettings)
+            Log.w(TAG, "autoCapture is not supported per scan on Android, the scanner uses its settings (openSettings)");
+        }
+        return intent;
+    }
+    
     /**
      * Check if camera permission is granted
      */
@@ -283,31 +497,41 @@ public class WaterMeterPlugin extends CordovaPlugin {
                 return;
             }
             
+            if (scanSession != null) {
+                handleSessionResult(resultCode, data);
+                return;
+            }
+            
             if (resultCode == Activity.RESULT_OK && data != null) {
                 String text = data.getStringExtra(CameraScanActivity.EXTRA_RESULT_TEXT);
                 float confidence = data.getFloatExtra(CameraScanActivity.EXTRA_RESULT_CONFIDENCE, 0f);
                 String imagePath = data.getStringExtra(CameraScanActivity.EXTRA_RESULT_IMAGE_PATH);
                 
                 try {
-                    JSONObject result = new JSONObject();
-                    result.put("text", text != null ? text : "");
-                    result.put("confidence", confidence);
-                    result.put("success", text != null && !text.isEmpty());
+                    JSONObject result = BridgeCodec.buildResult(text, confidence);
+                    scanValidator.apply(result);
+                    recordAudit(AuditLog.SOURCE_SCAN, result, null, scanMeterId, imagePath);
+                    boolean sendImage = false;
                     if (imagePath != null && !imagePath.isEmpty()) {
                         result.put("imagePath", imagePath);
                         
-                        // Convert image to base64 for WebView compatibility
-                        String base64Image = convertImageToBase64(imagePath);
-                        if (base64Image != null) {
-                            result.put("imageBase64", base64Image);
-                        }
+                        // Base64 preview is opt-in; by default the app loads the image
+                        // lazily through getThumbnail/getImageBytes
+                        sendImage = IMAGE_RESULT_BASE64.equals(scanImageResult);
                     }
                     
                     // Usage quota is now incremented by SDK internally (CameraScanActivity)
                     // No need to call incrementUsage here - SDK handles it for security
                     
-                    Log.d(TAG, "Scan result: " + result.toString());
-                    scanCallback.success(result);
+                    Log.d(TAG, "Scan result: text=" + text + ", confidence=" + confidence);
+                    if (sendImage) {
+                        // Answer with the reading now, the image follows as a second update
+                        result.put("imagePending", true);
+                        sendUpdate(scanCallback, result);
+                        sendScanImage(scanCallback, result, imagePath);
+                    } else {
+                        scanCallback.success(result);
+                    }
                     
                 } catch (JSONException e) {
                     Log.e(TAG, "Error creating result JSON", e);
@@ -323,6 +547,102 @@ public class WaterMeterPlugin extends CordovaPlugin {
         }
     }
     
+    /**
+     * Stream a session reading and relaunch the scanner, or finish the session
+     */
+    private void handleSessionResult(int resultCode, Intent data) {
+        ScanSession session = scanSession;
+        CallbackContext callbackContext = scanCallback;
+        try {
+            if (resultCode != Activity.RESULT_OK || data == null) {
+                // Closing the scanner ends the session normally
+                finishSession(session, callbackContext, "cancelled");
+                return;
+            }
+            
+            String text = data.getStringExtra(CameraScanActivity.EXTRA_RESULT_TEXT);
+            float confidence = data.getFloatExtra(CameraScanActivity.EXTRA_RESULT_CONFIDENCE, 0f);
+            String imagePath = data.getStringExtra(CameraScanActivity.EXTRA_RESULT_IMAGE_PATH);
+            
+            JSONObject event = BridgeCodec.buildResult(text, confidence);
+            scanValidator.apply(event);
+            recordAudit(AuditLog.SOURCE_SCAN, event, null, scanMeterId, imagePath);
+            if (imagePath != null && !imagePath.isEmpty()) {
+                event.put("imagePath", imagePath);
+            }
+            if (ScanSession.isEmpty(event.getString("reading"))) {
+                // Nothing read: not a duplicate of anything, scan the same meter again
+                session.reject();
+                event.put("type", "rejected");
+                event.put("reason", "empty");
+            } else if (session.retryUnreliable && !event.getBoolean("isReliable")) {
+                // Implausible reading: report it and scan the same meter again
+                session.reject();
+                event.put("type", "rejected");
+                event.put("reason", "unreliable");
+            } else if (session.accept(event.getString("reading"), SystemClock.elapsedRealtime())) {
+                event.put("type", "reading");
+                event.put("index", session.getAccepted() - 1);
+            } else {
+                event.put("type", "duplicate");
+            }
+            Log.d(TAG, "Session " + event.getString("type") + ": text=" + text + ", confidence=" + confidence);
+            sendUpdate(callbackContext, event);
+            
+            if (session.isComplete()) {
+                finishSession(session, callbackContext, "maxReadings");
+            } else {
+                launchScanner(session.scanOptions, callbackContext);
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Error creating session result JSON", e);
+            scanSession = null;
+            scanCallback = null;
+            callbackContext.error("Error processing result: " + e.getMessage());
+        }
+    }
+    
+    private void finishSession(ScanSession session, CallbackContext callbackContext, String reason) throws JSONException {
+        scanSession = null;
+        scanCallback = null;
+        JSONObject summary = new JSONObject();
+        summary.put("type", "end");
+        summary.put("reason", reason);
+        summary.put("readings", session.getAccepted());
+        summary.put("duplicates", session.getDuplicates());
+        summary.put("rejected", session.getRejected());
+        callbackContext.success(summary);
+    }
+    
+    /**
+     * Send an intermediate result, keeping the callback open for more
+     */
+    static void sendUpdate(CallbackContext callbackContext, JSONObject message) {
+        PluginResult pluginResult = new PluginResult(PluginResult.Status.OK, message);
+        pluginResult.setKeepCallback(true);
+        callbackContext.sendPluginResult(pluginResult);
+    }
+    
+    /**
+     * Encode the scan image off the UI thread and deliver it as the final scan callback
+     */
+    private void sendScanImage(CallbackContext callbackContext, JSONObject reading, String imagePath) {
+        cordova.getThreadPool().execute(() -> {
+            try {
+                JSONObject result = new JSONObject(reading.toString());
+                result.put("imagePending", false);
+                String base64Image = convertImageToBase64(imagePath);
+                if (base64Image != null) {
+                    result.put("imageBase64", base64Image);
+                }
+                callbackContext.success(result);
+            } catch (JSONException e) {
+                Log.e(TAG, "Error creating image result JSON", e);
+                callbackContext.error("Error processing result: " + e.getMessage());
+            }
+        });
+    }
+    
     /**
      * Handle permission request result
      */
@@ -363,22 +683,19 @@ public class WaterMeterPlugin extends CordovaPlugin {
             }
             
             // Decode with inSampleSize to reduce memory usage
-            BitmapFactory.Options options = new BitmapFactory.Options();
-            options.inSampleSize = 2; // Scale down by 2
-            Bitmap bitmap = BitmapFactory.decodeFile(imagePath, options);
+            ImageDecoder.Options options = new ImageDecoder.Options();
+            options.sampleSize = 2; // Scale down by 2
+            options.pool = getBitmapPool();
+            Bitmap bitmap = ImageDecoder.decodeFile(imagePath, options);
             
             if (bitmap == null) {
                 Log.e(TAG, "Failed to decode image: " + imagePath);
                 return null;
             }
             
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            bitmap.compress(Bitmap.CompressFormat.JPEG, 80, baos);
-            byte[] bytes = baos.toByteArray();
-            bitmap.recycle();
-            
-            String base64 = Base64.encodeToString(bytes, Base64.NO_WRAP);
-            return "data:image/jpeg;base64," + base64;
+            String dataUrl = BridgeCodec.encodeJpegDataUrl(bitmap, 80);
+            releaseBitmap(bitmap);
+            return dataUrl;
             
         } catch (Exception e) {
             Log.e(TAG, "Error converting image to base64", e);
@@ -391,156 +708,1222 @@ public class WaterMeterPlugin extends CordovaPlugin {
     /**
      * Recognize water meter reading from base64 encoded image
      */
-    private void recognizeBase64(String base64Image, CallbackContext callbackContext) {
-        cordova.getThreadPool().execute(() -> {
+    private void recognizeBase64(String base64Image, JSONObject options, CallbackContext callbackContext) {
+        submitJob(options, RecognitionScheduler.PRIORITY_INTERACTIVE, callbackContext, job -> {
             try {
-                // Remove data URL prefix if present
-                String base64Data = base64Image;
-                if (base64Data.contains("base64,")) {
-                    base64Data = base64Data.substring(base64Data.indexOf("base64,") + 7);
-                }
+                RecognitionMetrics.Timings timings = new RecognitionMetrics.Timings();
                 
-                // Decode base64 to bitmap
-                byte[] imageBytes = Base64.decode(base64Data, Base64.DEFAULT);
-                Bitmap bitmap = BitmapFactory.decodeByteArray(imageBytes, 0, imageBytes.length);
+                // Decode base64 (data URL prefix is skipped) to image bytes
+                byte[] imageBytes = BridgeCodec.decodeBase64Image(base64Image);
+                recognizeEncoded(job, imageBytes, options, timings, null, "Failed to decode base64 image", callbackContext);
                 
-                if (bitmap == null) {
-                    callbackContext.error("Failed to decode base64 image");
+            } catch (Exception e) {
+                metrics.recordError();
+                Log.e(TAG, "Error in recognizeBase64", e);
+                callbackContext.error("Error: " + e.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * Recognize water meter reading from raw encoded image bytes (ArrayBuffer from JS)
+     */
+    private void recognizeBytes(byte[] imageBytes, JSONObject options, CallbackContext callbackContext) {
+        submitJob(options, RecognitionScheduler.PRIORITY_INTERACTIVE, callbackContext, job -> {
+            try {
+                RecognitionMetrics.Timings timings = new RecognitionMetrics.Timings();
+                recognizeEncoded(job, imageBytes, options, timings, null, "Failed to decode image bytes", callbackContext);
+                
+            } catch (Exception e) {
+                metrics.recordError();
+                Log.e(TAG, "Error in recognizeBytes", e);
+                callbackContext.error("Error: " + e.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * Return an image file as an ArrayBuffer
+     * Without maxSide the file bytes are sent as-is; with it the image is downsampled and re-encoded as JPEG
+     */
+    private void getImageBytes(String filePath, JSONObject options, CallbackContext callbackContext) {
+        cordova.getThreadPool().execute(() -> {
+            try {
+                String path = normalizePath(filePath);
+                File file = new File(path);
+                if (!file.exists()) {
+                    callbackContext.error("Image file does not exist: " + path);
                     return;
                 }
                 
-                // Perform OCR
-                performOCR(bitmap, callbackContext);
+                int maxSide = options != null ? options.optInt("maxSide", 0) : 0;
+                byte[] bytes;
+                if (maxSide <= 0) {
+                    bytes = readFile(file);
+                } else {
+                    ImageDecoder.Options decodeOptions = new ImageDecoder.Options();
+                    decodeOptions.maxSideLength = maxSide;
+                    Bitmap bitmap = ImageDecoder.decodeFile(path, decodeOptions);
+                    if (bitmap == null) {
+                        callbackContext.error("Failed to load image from: " + path);
+                        return;
+                    }
+                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                    bitmap.compress(Bitmap.CompressFormat.JPEG, options.optInt("quality", 80), baos);
+                    bitmap.recycle();
+                    bytes = baos.toByteArray();
+                }
+                
+                callbackContext.sendPluginResult(new PluginResult(PluginResult.Status.OK, bytes));
                 
             } catch (Exception e) {
-                Log.e(TAG, "Error in recognizeBase64", e);
+                Log.e(TAG, "Error in getImageBytes", e);
                 callbackContext.error("Error: " + e.getMessage());
             }
         });
     }
     
     /**
-     * Recognize water meter reading from file path
+     * Produce (or reuse from the disk cache) a JPEG thumbnail of an image file
      */
-    private void recognizeFile(String filePath, CallbackContext callbackContext) {
+    private void getThumbnail(String filePath, JSONObject options, CallbackContext callbackContext) {
+        JSONObject opts = options != null ? options : new JSONObject();
+        int maxSide = Math.max(16, opts.optInt("maxSide", DEFAULT_THUMBNAIL_MAX_SIDE));
+        int quality = Math.max(1, Math.min(100, opts.optInt("quality", DEFAULT_THUMBNAIL_QUALITY)));
+        String format = opts.optString("format", "path");
+        
         cordova.getThreadPool().execute(() -> {
             try {
-                // Handle file:// prefix
-                String path = filePath;
-                if (path.startsWith("file://")) {
-                    path = path.substring(7);
+                String path = normalizePath(filePath);
+                File source = new File(path);
+                if (!source.exists()) {
+                    callbackContext.error("Image file does not exist: " + path);
+                    return;
                 }
                 
-                Bitmap bitmap = BitmapFactory.decodeFile(path);
-                if (bitmap == null) {
-                    callbackContext.error("Failed to load image from: " + path);
+                ThumbnailCache cache = getThumbnailCache();
+                String key = ThumbnailCache.key(source, maxSide, quality);
+                File thumbnail = cache.get(key);
+                boolean cached = thumbnail != null;
+                if (!cached) {
+                    byte[] jpeg = createThumbnail(path, maxSide, quality);
+                    if (jpeg == null) {
+                        callbackContext.error("Failed to load image from: " + path);
+                        return;
+                    }
+                    thumbnail = cache.put(key, jpeg);
+                }
+                
+                if ("arraybuffer".equals(format)) {
+                    callbackContext.sendPluginResult(new PluginResult(PluginResult.Status.OK, readFile(thumbnail)));
                     return;
                 }
                 
-                performOCR(bitmap, callbackContext);
+                JSONObject result = new JSONObject();
+                result.put("thumbnailPath", thumbnail.getAbsolutePath());
+                result.put("cached", cached);
+                result.put("bytes", thumbnail.length());
+                if ("base64".equals(format)) {
+                    result.put("imageBase64", BridgeCodec.toJpegDataUrl(readFile(thumbnail)));
+                }
+                callbackContext.success(result);
                 
             } catch (Exception e) {
-                Log.e(TAG, "Error in recognizeFile", e);
+                Log.e(TAG, "Error in getThumbnail", e);
                 callbackContext.error("Error: " + e.getMessage());
             }
         });
     }
     
     /**
-     * Perform OCR on bitmap using PredictorManager
+     * Decode with inSampleSize, scale to the exact bound and encode as JPEG
      */
-    private void performOCR(Bitmap bitmap, CallbackContext callbackContext) {
-        try {
-            PredictorManager manager = PredictorManager.getInstance();
-            
-            // Initialize if needed
-            if (!manager.isInitialized()) {
-                boolean initialized = manager.init(cordova.getActivity().getApplicationContext());
-                if (!initialized) {
-                    callbackContext.error("Failed to initialize OCR predictor");
-                    return;
-                }
-            }
-            
-            Predictor predictor = manager.getPredictor();
-            if (predictor == null) {
-                callbackContext.error("OCR predictor not available");
-                return;
+    private static byte[] createThumbnail(String path, int maxSide, int quality) throws IOException {
+        ImageDecoder.Options decodeOptions = new ImageDecoder.Options();
+        decodeOptions.maxSideLength = maxSide;
+        Bitmap bitmap = ImageDecoder.decodeFile(path, decodeOptions);
+        if (bitmap == null) {
+            return null;
+        }
+        
+        int longSide = Math.max(bitmap.getWidth(), bitmap.getHeight());
+        if (longSide > maxSide) {
+            float scale = (float) maxSide / longSide;
+            Bitmap scaled = Bitmap.createScaledBitmap(bitmap,
+                Math.max(1, Math.round(bitmap.getWidth() * scale)),
+                Math.max(1, Math.round(bitmap.getHeight() * scale)), true);
+            if (scaled != bitmap) {
+                bitmap.recycle();
+                bitmap = scaled;
             }
-            
-            // Run OCR
-            predictor.setInputImage(bitmap);
-            boolean success = predictor.runModel(1, 1, 1); // run_det=1, run_cls=1, run_rec=1
-            
-            // Get results
-            JSONObject result = new JSONObject();
-            String text = predictor.outputResult();
-            float confidence = predictor.conf_rec();
-            
-            result.put("text", text != null ? text : "");
-            result.put("confidence", confidence);
-            result.put("success", text != null && !text.isEmpty());
-            
-            Log.d(TAG, "OCR result: text=" + text + ", confidence=" + confidence);
-            callbackContext.success(result);
-            
-            // Clean up bitmap
-            bitmap.recycle();
-            
-        } catch (Exception e) {
-            Log.e(TAG, "OCR Error", e);
-            callbackContext.error("OCR Error: " + e.getMessage());
         }
+        
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.JPEG, quality, baos);
+        bitmap.recycle();
+        return baos.toByteArray();
     }
     
     /**
-     * Open SDK settings activity
+     * Delete all cached thumbnails
      */
-    private void openSettings(CallbackContext callbackContext) {
-        cordova.getActivity().runOnUiThread(() -> {
+    private void clearThumbnailCache(CallbackContext callbackContext) {
+        cordova.getThreadPool().execute(() -> {
             try {
-                Intent intent = new Intent(cordova.getActivity(), CameraSettingsActivity.class);
-                cordova.getActivity().startActivity(intent);
-                callbackContext.success("Settings opened");
+                ThumbnailCache cache = getThumbnailCache();
+                cache.clear();
+                callbackContext.success(cache.stats());
             } catch (Exception e) {
-                Log.e(TAG, "Error opening settings", e);
-                callbackContext.error("Failed to open settings: " + e.getMessage());
+                Log.e(TAG, "Error clearing thumbnail cache", e);
+                callbackContext.error("Failed to clear thumbnail cache: " + e.getMessage());
             }
         });
     }
     
-    /**
-     * Get SDK version
-     */
-    private void getVersion(CallbackContext callbackContext) {
-        callbackContext.success(SDK_VERSION);
+    private synchronized ThumbnailCache getThumbnailCache() {
+        if (thumbnailCache == null) {
+            File dir = new File(cordova.getActivity().getApplicationContext().getCacheDir(), THUMBNAIL_CACHE_DIR);
+            thumbnailCache = new ThumbnailCache(dir, ThumbnailCache.DEFAULT_MAX_BYTES);
+        }
+        return thumbnailCache;
     }
     
-    /**
-     * Check if SDK OCR predictor is initialized
-     */
-    private void isInitialized(CallbackContext callbackContext) {
-        try {
-            boolean initialized = PredictorManager.getInstance().isInitialized();
-            JSONObject result = new JSONObject();
-            result.put("initialized", initialized);
-            callbackContext.success(result);
-        } catch (Exception e) {
-            callbackContext.error("Error: " + e.getMessage());
+    static byte[] readFile(File file) throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        try (InputStream in = new FileInputStream(file)) {
+            int read = 0;
+            while (read < bytes.length) {
+                int count = in.read(bytes, read, bytes.length - read);
+                if (count < 0) {
+                    throw new IOException("Unexpected end of file: " + file.getPath());
+                }
+                read += count;
+            }
         }
+        return bytes;
     }
     
     /**
-     * Reset SDK (release resources)
+     * Recognize water meter reading from file path
      */
-    private void reset(CallbackContext callbackContext) {
-        try {
-            PredictorManager.getInstance().release();
-            Log.i(TAG, "SDK resources released");
-            callbackContext.success("SDK reset");
-        } catch (Exception e) {
-            Log.e(TAG, "Error resetting SDK", e);
-            callbackContext.error("Failed to reset SDK: " + e.getMessage());
+    private void recognizeFile(String filePath, JSONObject options, CallbackContext callbackContext) {
+        submitJob(options, RecognitionScheduler.PRIORITY_INTERACTIVE, callbackContext, job -> {
+            try {
+                RecognitionMetrics.Timings timings = new RecognitionMetrics.Timings();
+                String path = normalizePath(filePath);
+                if (useResultCache(options)) {
+                    // Read the bytes once: they feed both the content hash and the decoder
+                    File file = new File(path);
+                    if (!file.exists()) {
+                        metrics.recordError();
+                        callbackContext.error("Failed to load image from: " + path);
+                        return;
+                    }
+                    recognizeEncoded(job, readFile(file), options, timings, path, "Failed to load image from: " + path, callbackContext);
+                    return;
+                }
+                
+                Bitmap bitmap = ImageDecoder.decodeFile(path, decodeOptions(options));
+                if (bitmap == null) {
+                    metrics.recordError();
+                    callbackContext.error("Failed to load image from: " + path);
+                    return;
+                }
+                timings.mark(RecognitionMetrics.STAGE_DECODE);
+                if (skipCancelled(job, bitmap, callbackContext)) {
+                    return;
+                }
+                
+                performOCR(job, bitmap, timings, options, path, null, callbackContext);
+                
+            } catch (Exception e) {
+                metrics.recordError();
+                Log.e(TAG, "Error in recognizeFile", e);
+                callbackContext.error("Error: " + e.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * Recognize a batch of image files
+     * Decoding runs ahead of inference; progress is streamed through the kept callback
+     */
+    private void recognizeBatch(JSONArray filePaths, JSONObject options, CallbackContext callbackContext) {
+        if (filePaths.length() == 0) {
+            callbackContext.error("No file paths provided");
+            return;
+        }
+        
+        RecognitionScheduler.Job job = trackJob(options, callbackContext);
+        if (job == null) {
+            return;
+        }
+        cordova.getThreadPool().execute(() -> {
+            try {
+                new BatchRecognizer(createFileEngine(options, job.priority), options).run(filePaths, job, callbackContext);
+            } catch (Exception e) {
+                Log.e(TAG, "Error in recognizeBatch", e);
+                callbackContext.error("Error: " + e.getMessage());
+            } finally {
+                getScheduler().finish(job, job.isCancelled()
+                    ? RecognitionScheduler.STATE_CANCELLED : RecognitionScheduler.STATE_COMPLETED);
+            }
+        });
+    }
+    
+    /**
+     * Recognize several frames of the same meter and fuse them by confidence-weighted voting
+     * Inputs are file paths or base64 images; frames run concurrently up to the pool size
+     */
+    private void recognizeConsensus(JSONArray inputs, JSONObject options, CallbackContext callbackContext) {
+        if (inputs.length() == 0) {
+            callbackContext.error("No images provided");
+            return;
+        }
+        
+        ImageDecoder.Options decodeOptions = decodeOptions(options);
+        submitJob(options, RecognitionScheduler.PRIORITY_INTERACTIVE, callbackContext, job -> {
+            ConsensusRecognizer.Engine engine = new ConsensusRecognizer.Engine() {
+                @Override
+                public Bitmap decode(int index) throws Exception {
+                    String input = inputs.getString(index);
+                    Bitmap bitmap;
+                    if (input.startsWith("/") || input.startsWith("file://")) {
+                        bitmap = ImageDecoder.decodeFile(normalizePath(input), decodeOptions);
+                    } else {
+                        byte[] imageBytes = BridgeCodec.decodeBase64Image(input);
+                        bitmap = ImageDecoder.decodeByteArray(imageBytes, 0, imageBytes.length, decodeOptions);
+                    }
+                    if (bitmap == null) {
+                        metrics.recordError();
+                    }
+                    return bitmap;
+                }
+                
+                @Override
+                public JSONObject recognize(int index, Bitmap bitmap, RecognitionMetrics.Timings timings) throws Exception {
+                    try {
+                        return recognizeAndRecord(bitmap, timings, options, job.priority);
+                    } catch (Exception e) {
+                        metrics.recordError();
+                        throw e;
+                    }
+                }
+                
+                @Override
+                public void release(Bitmap bitmap) {
+                    releaseBitmap(bitmap);
+                }
+            };
+            
+            try {
+                int concurrency = options.optInt("concurrency", getPredictorPool().getMaxSize());
+                JSONObject result = new ConsensusRecognizer(engine, inputs.length(), concurrency, options).run(job);
+                if (job.isCancelled()) {
+                    callbackContext.error("Cancelled");
+                    return;
+                }
+                String imagePath = consensusImagePath(inputs, result);
+                ReadingValidator.fromOptions(options).apply(result);
+                // Only the fused reading is audited, not each frame
+                recordAudit(AuditLog.SOURCE_CONSENSUS, result, null, options, imagePath);
+                callbackContext.success(result);
+            } catch (Exception e) {
+                Log.e(TAG, "Error in recognizeConsensus", e);
+                callbackContext.error("Error: " + e.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * File path of a frame that read exactly the fused reading, for the audit log
+     * Null when the frames were base64 or none matched
+     */
+    private String consensusImagePath(JSONArray inputs, JSONObject result) throws JSONException {
+        String reading = result.optString("reading", "");
+        JSONArray frames = result.optJSONArray("frames");
+        for (int i = 0; frames != null && !reading.isEmpty() && i < frames.length(); i++) {
+            JSONObject frame = frames.getJSONObject(i);
+            if (!reading.equals(frame.optString("reading"))) {
+                continue;
+            }
+            String input = inputs.optString(frame.optInt("index", -1), "");
+            if (input.startsWith("/") || input.startsWith("file://")) {
+                return normalizePath(input);
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Recognize every matching image under a directory, appending results to an NDJSON file
+     * Progress is checkpointed; passing the returned resumeToken continues an interrupted import
+     */
+    private void recognizeDirectory(String directory, JSONObject options, CallbackContext callbackContext) {
+        RecognitionScheduler.Job job = trackJob(options, callbackContext);
+        if (job == null) {
+            return;
+        }
+        File stateDir = new File(cordova.getActivity().getApplicationContext().getFilesDir(), IMPORT_STATE_DIR);
+        cordova.getThreadPool().execute(() -> {
+            try {
+                new DirectoryImporter(createFileEngine(options, job.priority), stateDir, options)
+                    .run(normalizePath(directory), normalizePath(options.optString("outputPath", "")),
+                        options, job, callbackContext);
+            } catch (Exception e) {
+                Log.e(TAG, "Error in recognizeDirectory", e);
+                callbackContext.error("Error: " + e.getMessage());
+            } finally {
+                getScheduler().finish(job, job.isCancelled()
+                    ? RecognitionScheduler.STATE_CANCELLED : RecognitionScheduler.STATE_COMPLETED);
+            }
+        });
+    }
+    
+    /**
+     * Decode and recognize stages for file based bulk recognition (batch, directory import)
+     * Predictors are checked out at the job's priority, so bulk work yields to interactive calls
+     */
+    private BatchRecognizer.Engine createFileEngine(JSONObject options, int priority) {
+        ImageDecoder.Options decodeOptions = decodeOptions(options);
+        return new BatchRecognizer.Engine() {
+            @Override
+            public Bitmap decode(String path) throws Exception {
+                Bitmap bitmap = ImageDecoder.decodeFile(normalizePath(path), decodeOptions);
+                if (bitmap == null) {
+                    metrics.recordError();
+                }
+                return bitmap;
+            }
+            
+            @Override
+            public JSONObject recognize(String path, Bitmap bitmap, RecognitionMetrics.Timings timings) throws Exception {
+                try {
+                    JSONObject result = recognizeAndRecord(bitmap, timings, options, priority);
+                    recordAudit(AuditLog.SOURCE_RECOGNIZE, result, timings, options, normalizePath(path));
+                    return result;
+                } catch (Exception e) {
+                    metrics.recordError();
+                    throw e;
+                }
+            }
+            
+            @Override
+            public void release(Bitmap bitmap) {
+                releaseBitmap(bitmap);
+            }
+        };
+    }
+    
+    /**
+     * Strip file:// prefix from a path coming from JS
+     */
+    private static String normalizePath(String filePath) {
+        if (filePath.startsWith("file://")) {
+            return filePath.substring(7);
+        }
+        return filePath;
+    }
+    
+    private synchronized BitmapPool getBitmapPool() {
+        if (bitmapPool == null) {
+            bitmapPool = new BitmapPool(BitmapPool.defaultMaxBytes());
+        }
+        return bitmapPool;
+    }
+    
+    /**
+     * Decode options from JS, decoding into pooled bitmaps
+     */
+    private ImageDecoder.Options decodeOptions(JSONObject options) {
+        ImageDecoder.Options decodeOptions = ImageDecoder.Options.fromJson(options);
+        decodeOptions.pool = getBitmapPool();
+        return decodeOptions;
+    }
+    
+    /**
+     * Hand a bitmap that is no longer needed back to the pool
+     */
+    private void releaseBitmap(Bitmap bitmap) {
+        getBitmapPool().put(bitmap);
+    }
+    
+    /**
+     * Queue a recognition on the scheduler
+     * options.priority ("interactive" / "background") orders the queue, options.jobId names the job for cancelJob
+     */
+    private void submitJob(JSONObject options, int defaultPriority, CallbackContext callbackContext, RecognitionScheduler.Task task) {
+        int priority = RecognitionScheduler.parsePriority(options, defaultPriority);
+        String jobId = options != null ? options.optString("jobId", null) : null;
+        try {
+            getScheduler().submit(jobId, priority, callbackContext, task);
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "Recognition rejected: " + e.getMessage());
+            callbackContext.error(e.getMessage());
+        }
+    }
+    
+    /**
+     * Register a bulk job that runs on its own thread, background priority unless options say otherwise
+     * Answers the callback and returns null when the job id is already in use
+     */
+    private RecognitionScheduler.Job trackJob(JSONObject options, CallbackContext callbackContext) {
+        int priority = RecognitionScheduler.parsePriority(options, RecognitionScheduler.PRIORITY_BACKGROUND);
+        try {
+            return getScheduler().track(options.optString("jobId", null), priority, callbackContext);
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "Job rejected: " + e.getMessage());
+            callbackContext.error(e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Stop a job that was cancelled while decoding, before it reaches the predictor
+     */
+    private boolean skipCancelled(RecognitionScheduler.Job job, Bitmap bitmap, CallbackContext callbackContext) {
+        if (!job.isCancelled()) {
+            return false;
+        }
+        releaseBitmap(bitmap);
+        callbackContext.error("Cancelled");
+        return true;
+    }
+    
+    /**
+     * Recognize encoded image bytes, answering from the result cache when possible
+     */
+    private void recognizeEncoded(RecognitionScheduler.Job job, byte[] imageBytes, JSONObject options,
+                                  RecognitionMetrics.Timings timings, String imagePath, String decodeError,
+                                  CallbackContext callbackContext) throws IOException, JSONException {
+        String cacheKey = null;
+        if (useResultCache(options)) {
+            cacheKey = ResultCache.key(imageBytes, 0, imageBytes.length, options, modelTag());
+            JSONObject cached = getResultCache().get(cacheKey);
+            if (cached != null) {
+                // Constraints are per call and not part of the key, so validate again
+                ReadingValidator.fromOptions(options).apply(cached);
+                recordAudit(AuditLog.SOURCE_RECOGNIZE, cached, null, options, imagePath);
+                callbackContext.success(cached);
+                return;
+            }
+        }
+        
+        Bitmap bitmap = ImageDecoder.decodeByteArray(imageBytes, 0, imageBytes.length, decodeOptions(options));
+        if (bitmap == null) {
+            metrics.recordError();
+            callbackContext.error(decodeError);
+            return;
+        }
+        timings.mark(RecognitionMetrics.STAGE_DECODE);
+        if (skipCancelled(job, bitmap, callbackContext)) {
+            return;
+        }
+        
+        performOCR(job, bitmap, timings, options, imagePath, cacheKey, callbackContext);
+    }
+    
+    /**
+     * Perform OCR on bitmap using PredictorManager
+     * A non-null cacheKey stores the result in the result cache
+     */
+    private void performOCR(RecognitionScheduler.Job job, Bitmap bitmap, RecognitionMetrics.Timings timings,
+                            JSONObject options, String imagePath, String cacheKey, CallbackContext callbackContext) {
+        try {
+            JSONObject result = recognizeAndRecord(bitmap, timings, options, job.priority);
+            recordAudit(AuditLog.SOURCE_RECOGNIZE, result, timings, options, imagePath);
+            if (cacheKey != null) {
+                getResultCache().put(cacheKey, result);
+            }
+            callbackContext.success(result);
+        } catch (IllegalStateException e) {
+            // Predictor setup failure, message is already user facing
+            metrics.recordError();
+            callbackContext.error(e.getMessage());
+        } catch (Exception e) {
+            metrics.recordError();
+            Log.e(TAG, "OCR Error", e);
+            callbackContext.error("OCR Error: " + e.getMessage());
+        } finally {
+            releaseBitmap(bitmap);
+        }
+    }
+    
+    /**
+     * Recognize, feed the stage timings into the metrics, and attach them if requested
+     * Auditing is left to the caller, which knows whether this is a final reading or one frame of many
+     */
+    private JSONObject recognizeAndRecord(Bitmap bitmap, RecognitionMetrics.Timings timings, JSONObject options,
+                                          int priority) throws Exception {
+        JSONObject result = recognizeBitmap(bitmap, timings, options, priority);
+        ReadingValidator.fromOptions(options).apply(result);
+        metrics.record(timings);
+        if (options != null && options.optBoolean("timings", false)) {
+            result.put("timings", timings.toJson());
+        }
+        return result;
+    }
+    
+    /**
+     * Audit a reading returned to the caller; meterId comes from the call options
+     */
+    private void recordAudit(byte source, JSONObject result, RecognitionMetrics.Timings timings,
+                             JSONObject options, String imagePath) throws JSONException {
+        recordAudit(source, result, timings != null ? timings.toJson() : null,
+            options != null ? options.optString("meterId", null) : null, imagePath);
+    }
+    
+    /**
+     * Queue a validated reading for the audit log; the write happens off the calling thread
+     */
+    private void recordAudit(byte source, JSONObject result, JSONObject timings, String meterId, String imagePath) {
+        AuditLog log = getAuditLog();
+        if (log.isEnabled()) {
+            log.appendAsync(new AuditLog.Entry(source, result, timings, meterId, imagePath));
+        }
+    }
+    
+    /**
+     * Run a pooled predictor on a bitmap and build the result JSON
+     * Detection and angle classification can be skipped for pre-cropped, upright inputs
+     * (runDetection / runClassification options). Caller keeps ownership of the bitmap
+     */
+    private JSONObject recognizeBitmap(Bitmap bitmap, RecognitionMetrics.Timings timings, JSONObject options,
+                                       int priority) throws Exception {
+        int runDet = options == null || options.optBoolean("runDetection", true) ? 1 : 0;
+        int runCls = options == null || options.optBoolean("runClassification", true) ? 1 : 0;
+        timings.bitmapBytes = bitmap.getByteCount();
+        PredictorPool pool = getPredictorPool();
+        PredictorPool.Lease lease = pool.acquire(priority);
+        timings.mark(RecognitionMetrics.STAGE_ACQUIRE);
+        String text;
+        float confidence;
+        try {
+            Predictor predictor = lease.predictor;
+            
+            // Run OCR
+            predictor.setInputImage(bitmap);
+            timings.mark(RecognitionMetrics.STAGE_SET_INPUT);
+            predictor.runModel(runDet, runCls, 1); // recognition always runs
+            timings.mark(RecognitionMetrics.STAGE_INFERENCE);
+            
+            text = predictor.outputResult();
+            confidence = predictor.conf_rec();
+        } finally {
+            pool.release(lease);
+        }
+        
+        // Get results
+        JSONObject result = BridgeCodec.buildResult(text, confidence);
+        timings.mark(RecognitionMetrics.STAGE_EXTRACT);
+        
+        Log.d(TAG, "OCR result: text=" + text + ", confidence=" + confidence);
+        return result;
+    }
+    
+    private boolean useResultCache(JSONObject options) {
+        return getResultCache().isEnabled() && (options == null || options.optBoolean("cache", true));
+    }
+    
+    /**
+     * Identifies the model generation; part of every result cache key
+     */
+    private String modelTag() {
+        return modelTag(getPredictorPool());
+    }
+    
+    private static String modelTag(PredictorPool pool) {
+        return SDK_VERSION + "|" + pool.modelTag();
+    }
+    
+    private synchronized ResultCache getResultCache() {
+        if (resultCache == null) {
+            File dir = new File(cordova.getActivity().getApplicationContext().getCacheDir(), RESULT_CACHE_DIR);
+            resultCache = new ResultCache(dir);
+        }
+        return resultCache;
+    }
+    
+    /**
+     * Enable and size the recognition result cache
+     */
+    private void configureResultCache(JSONObject options, CallbackContext callbackContext) {
+        cordova.getThreadPool().execute(() -> {
+            try {
+                ResultCache cache = getResultCache();
+                JSONObject opts = options != null ? options : new JSONObject();
+                if (opts.optBoolean("clear", false)) {
+                    cache.clear();
+                }
+                cache.configure(opts);
+                callbackContext.success(cache.stats());
+            } catch (Exception e) {
+                Log.e(TAG, "Error configuring result cache", e);
+                callbackContext.error("Failed to configure result cache: " + e.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * Per-stage latency histograms and bitmap sizes since the last reset
+     */
+    private void getMetrics(CallbackContext callbackContext) {
+        try {
+            JSONObject snapshot = metrics.snapshot();
+            snapshot.put("resultCache", getResultCache().stats());
+            snapshot.put("bitmapPool", getBitmapPool().stats());
+            snapshot.put("encodeBuffers", BridgeCodec.bufferStats());
+            callbackContext.success(snapshot);
+        } catch (JSONException e) {
+            callbackContext.error("Error: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Size the decode bitmap pool; stats include the encode buffer reuse
+     */
+    private void configureBitmapPool(JSONObject options, CallbackContext callbackContext) {
+        try {
+            BitmapPool pool = getBitmapPool();
+            JSONObject opts = options != null ? options : new JSONObject();
+            if (opts.optBoolean("clear", false)) {
+                pool.clear();
+            }
+            if (opts.has("maxBytes")) {
+                pool.setMaxBytes(opts.getLong("maxBytes"));
+            }
+            JSONObject stats = pool.stats();
+            stats.put("encodeBuffers", BridgeCodec.bufferStats());
+            callbackContext.success(stats);
+        } catch (Exception e) {
+            Log.e(TAG, "Error configuring bitmap pool", e);
+            callbackContext.error("Failed to configure bitmap pool: " + e.getMessage());
+        }
+    }
+    
+    private synchronized AuditLog getAuditLog() {
+        if (auditLog == null) {
+            File dir = new File(cordova.getActivity().getApplicationContext().getFilesDir(), AUDIT_DIR);
+            auditLog = new AuditLog(dir, () -> AuditKey.load(new File(dir, AUDIT_KEY_FILE)));
+        }
+        return auditLog;
+    }
+    
+    /**
+     * Recorded readings, newest first, filtered by from/to timestamps and meterId
+     */
+    private void queryHistory(JSONObject options, CallbackContext callbackContext) {
+        cordova.getThreadPool().execute(() -> {
+            try {
+                callbackContext.success(getAuditLog().query(options));
+            } catch (Exception e) {
+                Log.e(TAG, "Error querying history", e);
+                callbackContext.error("Failed to query history: " + e.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * Write matching records as NDJSON, to options.outputPath or a file in the app's files directory
+     */
+    private void exportHistory(JSONObject options, CallbackContext callbackContext) {
+        cordova.getThreadPool().execute(() -> {
+            try {
+                JSONObject opts = options != null ? options : new JSONObject();
+                String outputPath = opts.optString("outputPath", "");
+                File output = outputPath.isEmpty()
+                    ? new File(cordova.getActivity().getApplicationContext().getFilesDir(),
+                        "watermeter-history-" + System.currentTimeMillis() + ".ndjson")
+                    : new File(normalizePath(outputPath));
+                callbackContext.success(getAuditLog().export(opts, output));
+            } catch (Exception e) {
+                Log.e(TAG, "Error exporting history", e);
+                callbackContext.error("Failed to export history: " + e.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * Recompute the hash chain over every recorded reading
+     */
+    private void verifyHistory(CallbackContext callbackContext) {
+        cordova.getThreadPool().execute(() -> {
+            try {
+                callbackContext.success(getAuditLog().verify());
+            } catch (Exception e) {
+                Log.e(TAG, "Error verifying history", e);
+                callbackContext.error("Failed to verify history: " + e.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * Enable or disable recording and set segment rollover; answers with the log stats
+     */
+    private void configureHistory(JSONObject options, CallbackContext callbackContext) {
+        cordova.getThreadPool().execute(() -> {
+            try {
+                AuditLog log = getAuditLog();
+                log.configure(options != null ? options : new JSONObject());
+                callbackContext.success(log.stats());
+            } catch (Exception e) {
+                Log.e(TAG, "Error configuring history", e);
+                callbackContext.error("Failed to configure history: " + e.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * Process and system memory plus what the plugin currently holds
+     */
+    private void getMemoryStatus(CallbackContext callbackContext) {
+        cordova.getThreadPool().execute(() -> {
+            try {
+                JSONObject status = memoryMonitor.snapshot();
+                synchronized (this) {
+                    if (predictorPool != null) {
+                        status.put("predictors", predictorPool.stats());
+                    }
+                    if (resultCache != null) {
+                        status.put("resultCache", resultCache.stats());
+                    }
+                    if (thumbnailCache != null) {
+                        status.put("thumbnailCache", thumbnailCache.stats());
+                    }
+                    if (bitmapPool != null) {
+                        status.put("bitmapPool", bitmapPool.stats());
+                    }
+                }
+                callbackContext.success(status);
+            } catch (Exception e) {
+                callbackContext.error("Error: " + e.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * Release what can be rebuilt, by trim level: extra predictors first, then the primary
+     * predictor and in-memory caches. Everything is re-created lazily on the next request.
+     * The primary is kept while a scan or session is open, since CameraScanActivity uses it directly.
+     */
+    private void onMemoryPressure(int level) {
+        PredictorPool pool;
+        ResultCache results;
+        ThumbnailCache thumbnails;
+        BitmapPool bitmaps;
+        synchronized (this) {
+            pool = predictorPool;
+            results = resultCache;
+            thumbnails = thumbnailCache;
+            bitmaps = bitmapPool;
+        }
+        boolean critical = MemoryMonitor.isCritical(level);
+        boolean releasePrimary = critical && scanCallback == null;
+        cordova.getThreadPool().execute(() -> {
+            if (pool != null && pool.releaseIdle(releasePrimary) > 0 && releasePrimary) {
+                lastPreload = null;
+            }
+            if (results != null && level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+                results.trimMemory(critical ? 0f : 0.25f);
+            }
+            if (thumbnails != null && critical) {
+                thumbnails.releaseIndex();
+            }
+            if (bitmaps != null && level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+                bitmaps.trim(critical ? 0f : 0.5f);
+            }
+            if (critical) {
+                BridgeCodec.releaseBuffers();
+            }
+        });
+    }
+    
+    /**
+     * Clear recorded metrics
+     */
+    private void resetMetrics(CallbackContext callbackContext) {
+        metrics.reset();
+        callbackContext.success("Metrics reset");
+    }
+    
+    /**
+     * Load the predictor ahead of the first recognition, optionally running a warm-up inference
+     */
+    private void preload(JSONObject options, CallbackContext callbackContext) {
+        boolean warmup = options == null || options.optBoolean("warmup", true);
+        cordova.getThreadPool().execute(() -> {
+            try {
+                callbackContext.success(preloadPredictor(warmup));
+            } catch (Exception e) {
+                Log.e(TAG, "Error preloading predictor", e);
+                callbackContext.error("Failed to preload predictor: " + e.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * Preload with warm-up after license activation so the first scan of a shift is not cold
+     */
+    private void preloadInBackground() {
+        cordova.getThreadPool().execute(() -> {
+            try {
+                preloadPredictor(true);
+            } catch (Exception e) {
+                Log.w(TAG, "Background preload failed: " + e.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * Initialize a predictor and run a synthetic inference, timing each phase
+     * Repeated calls return the timings of the preload that already completed
+     */
+    private JSONObject preloadPredictor(boolean warmup) throws Exception {
+        synchronized (preloadLock) {
+            boolean loaded = isPredictorLoaded();
+            if (loaded && lastPreload != null && (!warmup || lastPreload.optBoolean("warmedUp"))) {
+                JSONObject cached = new JSONObject(lastPreload.toString());
+                cached.put("cached", true);
+                return cached;
+            }
+            
+            predictorWarming = true;
+            preloadError = null;
+            try {
+                long start = SystemClock.elapsedRealtime();
+                PredictorPool pool = getPredictorPool();
+                PredictorPool.Lease lease = pool.acquire();
+                long initMs = SystemClock.elapsedRealtime() - start;
+                long warmupMs = 0;
+                try {
+                    if (warmup) {
+                        long warmupStart = SystemClock.elapsedRealtime();
+                        Bitmap bitmap = createWarmupBitmap();
+                        try {
+                            lease.predictor.setInputImage(bitmap);
+                            lease.predictor.runModel(1, 1, 1);
+                            lease.predictor.outputResult();
+                        } finally {
+                            bitmap.recycle();
+                        }
+                        warmupMs = SystemClock.elapsedRealtime() - warmupStart;
+                    }
+                } finally {
+                    pool.release(lease);
+                }
+                
+                JSONObject result = new JSONObject();
+                result.put("state", "ready");
+                result.put("warmedUp", warmup);
+                result.put("initMs", initMs);
+                result.put("warmupMs", warmupMs);
+                result.put("totalMs", SystemClock.elapsedRealtime() - start);
+                result.put("cached", false);
+                lastPreload = result;
+                Log.i(TAG, "Predictor preloaded: initMs=" + initMs + ", warmupMs=" + warmupMs);
+                return result;
+            } catch (Exception e) {
+                preloadError = e.getMessage();
+                throw e;
+            } finally {
+                predictorWarming = false;
+            }
+        }
+    }
+    
+    /**
+     * Synthetic meter-like image: dark digits on a light band, sized like a typical model input
+     */
+    private static Bitmap createWarmupBitmap() {
+        Bitmap bitmap = Bitmap.createBitmap(WARMUP_IMAGE_WIDTH, WARMUP_IMAGE_HEIGHT, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        canvas.drawColor(Color.WHITE);
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setColor(Color.BLACK);
+        paint.setTextSize(WARMUP_IMAGE_HEIGHT * 0.6f);
+        canvas.drawText("0123456", WARMUP_IMAGE_WIDTH * 0.1f, WARMUP_IMAGE_HEIGHT * 0.7f, paint);
+        return bitmap;
+    }
+    
+    /**
+     * Lazily create the predictor pool, starting from the tuning stored for this device
+     */
+    private synchronized PredictorPool getPredictorPool() {
+        if (predictorPool == null) {
+            predictorPool = new PredictorPool(cordova.getActivity().getApplicationContext());
+            applyStoredTuning(predictorPool);
+        }
+        return predictorPool;
+    }
+    
+    /**
+     * The SDK predictor or any pooled one (tuned pools bypass PredictorManager) is loaded
+     */
+    private boolean isPredictorLoaded() {
+        if (PredictorManager.getInstance().isInitialized()) {
+            return true;
+        }
+        synchronized (this) {
+            return predictorPool != null && predictorPool.isLoaded();
+        }
+    }
+    
+    /**
+     * Apply the auto-tune profile saved for this device, model and pool size, if any
+     */
+    private JSONObject applyStoredTuning(PredictorPool pool) {
+        try {
+            AutoTuner tuner = new AutoTuner(cordova.getActivity().getApplicationContext());
+            JSONObject profile = tuner.load(AutoTuner.profileKey(modelTag(pool), pool.getMaxSize()));
+            if (profile != null) {
+                pool.applyTuning(profile.getInt("cpuThreads"), profile.getString("powerMode"), profile.optBoolean("useGPU"));
+                Log.i(TAG, "Applied stored tuning: " + pool.tuningTag());
+            }
+            return profile;
+        } catch (Exception e) {
+            Log.w(TAG, "Ignoring stored tuning: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Benchmark predictor configurations on this device and keep the fastest
+     * A stored profile is reused unless force is set; loaded predictors are reloaded when the tuning changes
+     */
+    private void autoTune(JSONObject options, CallbackContext callbackContext) {
+        boolean force = options.optBoolean("force", false);
+        int iterations = options.optInt("iterations", AutoTuner.DEFAULT_ITERATIONS);
+        boolean includeGpu = options.optBoolean("includeGPU", false);
+        cordova.getThreadPool().execute(() -> {
+            try {
+                PredictorPool pool = getPredictorPool();
+                AutoTuner tuner = new AutoTuner(cordova.getActivity().getApplicationContext());
+                String key = AutoTuner.profileKey(modelTag(pool), pool.getMaxSize());
+                JSONObject profile = force ? null : tuner.load(key);
+                boolean cached = profile != null;
+                if (profile == null) {
+                    Bitmap input = createWarmupBitmap();
+                    try {
+                        profile = tuner.tune(pool, input, iterations, includeGpu);
+                    } finally {
+                        input.recycle();
+                    }
+                    tuner.save(key, profile);
+                }
+                
+                String previousTuning = pool.tuningTag();
+                pool.applyTuning(profile.getInt("cpuThreads"), profile.getString("powerMode"), profile.optBoolean("useGPU"));
+                if (!previousTuning.equals(pool.tuningTag())) {
+                    pool.drain();
+                    lastPreload = null;
+                }
+                profile.put("cached", cached);
+                callbackContext.success(profile);
+            } catch (Exception e) {
+                Log.e(TAG, "Error in autoTune", e);
+                callbackContext.error("Auto-tune failed: " + e.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * Lazily create the recognition scheduler, one worker per pooled predictor
+     */
+    private synchronized RecognitionScheduler getScheduler() {
+        if (scheduler == null) {
+            scheduler = new RecognitionScheduler(PredictorPool.DEFAULT_MAX_SIZE);
+        }
+        return scheduler;
+    }
+    
+    /**
+     * Cancel a queued or running recognition job
+     */
+    private void cancelJob(String jobId, CallbackContext callbackContext) {
+        try {
+            JSONObject result = new JSONObject();
+            result.put("jobId", jobId);
+            result.put("cancelled", getScheduler().cancel(jobId));
+            callbackContext.success(result);
+        } catch (Exception e) {
+            callbackContext.error("Error: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * State of one job, or queue depth and worker stats when no jobId is given
+     */
+    private void getJobState(String jobId, CallbackContext callbackContext) {
+        try {
+            RecognitionScheduler jobs = getScheduler();
+            if (jobId == null || jobId.isEmpty() || "null".equals(jobId)) {
+                callbackContext.success(jobs.stats());
+                return;
+            }
+            JSONObject state = jobs.state(jobId);
+            if (state == null) {
+                callbackContext.error("Unknown job: " + jobId);
+                return;
+            }
+            callbackContext.success(state);
+        } catch (Exception e) {
+            callbackContext.error("Error: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Configure predictor pool size and idle timeout
+     * The scheduler follows maxSize; maxQueuedJobs bounds the recognition queue
+     */
+    private void configurePredictorPool(JSONObject options, CallbackContext callbackContext) {
+        try {
+            JSONObject opts = options != null ? options : new JSONObject();
+            PredictorPool pool = getPredictorPool();
+            String previousModel = pool.modelTag();
+            String previousTuning = pool.tuningTag();
+            int previousSize = pool.getMaxSize();
+            pool.configure(opts);
+            if (!previousModel.equals(pool.modelTag())) {
+                // Results from the old model must not be served for the new one
+                getResultCache().clear();
+            }
+            boolean explicitTuning = opts.has("cpuThreads") || opts.has("powerMode") || opts.has("useGPU");
+            if (!explicitTuning && (previousSize != pool.getMaxSize() || !previousModel.equals(pool.modelTag()))) {
+                applyStoredTuning(pool);
+            }
+            if (!previousTuning.equals(pool.tuningTag())) {
+                // Loaded predictors keep their old settings; reload them off this thread
+                lastPreload = null;
+                cordova.getThreadPool().execute(pool::drain);
+            }
+            JSONObject stats = pool.stats();
+            RecognitionScheduler jobs = getScheduler();
+            jobs.setWorkers(stats.getInt("maxSize"));
+            if (opts.has("maxQueuedJobs")) {
+                jobs.setMaxQueued(opts.getInt("maxQueuedJobs"));
+            }
+            stats.put("jobs", jobs.stats());
+            callbackContext.success(stats);
+        } catch (Exception e) {
+            Log.e(TAG, "Error configuring predictor pool", e);
+            callbackContext.error("Failed to configure predictor pool: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Open SDK settings activity
+     */
+    private void openSettings(CallbackContext callbackContext) {
+        cordova.getActivity().runOnUiThread(() -> {
+            try {
+                Intent intent = new Intent(cordova.getActivity(), CameraSettingsActivity.class);
+                cordova.getActivity().startActivity(intent);
+                callbackContext.success("Settings opened");
+            } catch (Exception e) {
+                Log.e(TAG, "Error opening settings", e);
+                callbackContext.error("Failed to open settings: " + e.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * Get SDK version
+     */
+    private void getVersion(CallbackContext callbackContext) {
+        callbackContext.success(SDK_VERSION);
+    }
+    
+    /**
+     * Check if SDK OCR predictor is initialized
+     * state: "idle" (not loaded), "warming" (preload running), "ready" or "error" (last preload failed)
+     */
+    private void isInitialized(CallbackContext callbackContext) {
+        try {
+            boolean initialized = isPredictorLoaded();
+            String state;
+            if (predictorWarming) {
+                state = "warming";
+            } else if (initialized) {
+                state = "ready";
+            } else if (preloadError != null) {
+                state = "error";
+            } else {
+                state = "idle";
+            }
+            
+            JSONObject result = new JSONObject();
+            result.put("initialized", initialized);
+            result.put("state", state);
+            if (preloadError != null) {
+                result.put("error", preloadError);
+            }
+            JSONObject preload = lastPreload;
+            if (preload != null && initialized) {
+                result.put("preload", preload);
+            }
+            callbackContext.success(result);
+        } catch (Exception e) {
+            callbackContext.error("Error: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Reset SDK (release resources)
+     */
+    private void reset(CallbackContext callbackContext) {
+        cordova.getThreadPool().execute(() -> {
+            try {
+                // Draining waits for in-flight recognitions and unloads the pool's predictors,
+                // the SDK one too unless a scanner may still be using it; predictors still in
+                // use at the timeout are unloaded when they are returned
+                if (!getPredictorPool().drain(scanCallback == null)) {
+                    Log.w(TAG, "Reset while recognitions are running, their predictors are released when they finish");
+                }
+                getResultCache().clear();
+                getBitmapPool().clear();
+                lastPreload = null;
+                preloadError = null;
+                Log.i(TAG, "SDK resources released");
+                callbackContext.success("SDK reset");
+            } catch (Exception e) {
+                Log.e(TAG, "Error resetting SDK", e);
+                callbackContext.error("Failed to reset SDK: " + e.getMessage());
+            }
+        });
+    }
+    
+    @Override
+    public void onPause(boolean multitasking) {
+        // Keep the primary predictor so returning from the scanner stays warm, drop the extras
+        PredictorPool pool;
+        synchronized (this) {
+            pool = predictorPool;
+        }
+        if (pool != null) {
+            cordova.getThreadPool().execute(() -> pool.releaseIdle(false));
+        }
+        super.onPause(multitasking);
+    }
+    
+    @Override
+    public void onDestroy() {
+        if (memoryMonitor != null) {
+            memoryMonitor.unregister();
+        }
+        synchronized (this) {
+            if (scheduler != null) {
+                scheduler.shutdown();
+                scheduler = null;
+            }
+            if (predictorPool != null) {
+                predictorPool.shutdown();
+                predictorPool = null;
+            }
+            if (auditLog != null) {
+                auditLog.close();
+                auditLog = null;
+            }
         }
+        super.onDestroy();
     }
 }
@@ -0,0 +1,68 @@
+package com.eov.cordova.watermeter;
+
+import android.graphics.Bitmap;
+
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Individual bridge steps: base64 in (recognizeBase64), base64 out (scan result image)
+ * and result JSON building
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BridgeBenchmark {
+
+    /** Encoded image size in bytes */
+    @Param({"65536", "524288"})
+    public int imageBytes;
+
+    private String dataUrl;
+    private String plainBase64;
+    private Bitmap bitmap;
+
+    @Setup
+    public void setup() {
+        byte[] image = StandInPredictor.fakeImage(imageBytes, 42);
+        dataUrl = BridgeCodec.toJpegDataUrl(image);
+        plainBase64 = dataUrl.substring(BridgeCodec.JPEG_DATA_URL_PREFIX.length());
+        bitmap = StandInPredictor.encodedBitmap(image);
+    }
+
+    @Benchmark
+    public byte[] decodeDataUrl() {
+        return BridgeCodec.decodeBase64Image(dataUrl);
+    }
+
+    @Benchmark
+    public byte[] decodePlainBase64() {
+        return BridgeCodec.decodeBase64Image(plainBase64);
+    }
+
+    @Benchmark
+    public String encodeJpegDataUrl() {
+        return BridgeCodec.encodeJpegDataUrl(bitmap, 80);
+    }
+
+    @Benchmark
+    public String buildResultJson() throws JSONException {
+        // toString() is what Cordova does when it hands the result to the WebView
+        return BridgeCodec.buildResult(StandInPredictor.TEXT, StandInPredictor.CONFIDENCE).toString();
+    }
+}
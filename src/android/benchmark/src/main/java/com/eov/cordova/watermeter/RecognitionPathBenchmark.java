@@ -0,0 +1,149 @@
+package com.eov.cordova.watermeter;
+
+import android.graphics.Bitmap;
+
+import org.apache.cordova.CallbackContext;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * recognizeBase64 path with the predictor stood in: base64 decode, ImageDecoder with the
+ * bitmap pool, inference, ReadingValidator, result JSON and metrics, called singly, as a batch,
+ * from concurrent callers and through the recognition scheduler
+ * The steps are the plugin's own classes; only their sequence is repeated here, because
+ * WaterMeterPlugin itself needs Cordova. Pixel decoding is not measured: the Bitmap stand-in holds no pixels.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecognitionPathBenchmark {
+
+    static final int BATCH_SIZE = 16;
+    static final int CALLERS = 4;
+
+    /** Stand-in inference latency per image */
+    @Param({"0", "2000"})
+    public long inferenceMicros;
+
+    /** Encoded image size in bytes */
+    @Param({"131072"})
+    public int imageBytes;
+
+    /** Predictors available at once, like configurePredictorPool maxSize */
+    @Param({"2"})
+    public int poolSize;
+
+    private String[] dataUrls;
+    private StandInPredictor predictor;
+    private RecognitionMetrics metrics;
+    private RecognitionScheduler scheduler;
+    private BitmapPool pool;
+    private ReadingValidator validator;
+
+    @Setup
+    public void setup() {
+        dataUrls = new String[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            dataUrls[i] = BridgeCodec.toJpegDataUrl(StandInPredictor.fakeImage(imageBytes, i));
+        }
+        predictor = new StandInPredictor(inferenceMicros, poolSize);
+        metrics = new RecognitionMetrics();
+        scheduler = new RecognitionScheduler(poolSize);
+        scheduler.setMaxQueued(Integer.MAX_VALUE);
+        pool = new BitmapPool(BitmapPool.defaultMaxBytes());
+        validator = ReadingValidator.fromOptions(null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    /**
+     * One recognition in the order WaterMeterPlugin runs it on a worker thread
+     */
+    String recognize(String dataUrl) throws Exception {
+        RecognitionMetrics.Timings timings = new RecognitionMetrics.Timings();
+        byte[] encoded = BridgeCodec.decodeBase64Image(dataUrl);
+        ImageDecoder.Options decodeOptions = ImageDecoder.Options.fromJson(null);
+        decodeOptions.pool = pool;
+        Bitmap bitmap = ImageDecoder.decodeByteArray(encoded, 0, encoded.length, decodeOptions);
+        timings.mark(RecognitionMetrics.STAGE_DECODE);
+        timings.bitmapBytes = bitmap.getByteCount();
+        try {
+            String text = predictor.run(bitmap);
+            timings.mark(RecognitionMetrics.STAGE_INFERENCE);
+            JSONObject result = BridgeCodec.buildResult(text, StandInPredictor.CONFIDENCE);
+            timings.mark(RecognitionMetrics.STAGE_EXTRACT);
+            validator.apply(result);
+            metrics.record(timings);
+            return result.toString();
+        } finally {
+            pool.put(bitmap);
+        }
+    }
+
+    @Benchmark
+    public String single() throws Exception {
+        return recognize(dataUrls[0]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int batch() throws Exception {
+        int length = 0;
+        for (String dataUrl : dataUrls) {
+            length += recognize(dataUrl).length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    @Threads(CALLERS)
+    public String concurrent() throws Exception {
+        return recognize(dataUrls[(int) (Thread.currentThread().getId() % BATCH_SIZE)]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void scheduled() throws Exception {
+        CountDownLatch done = new CountDownLatch(BATCH_SIZE);
+        CallbackContext callback = new CallbackContext() {
+            @Override
+            public void success(String message) {
+                done.countDown();
+            }
+
+            @Override
+            public void error(String message) {
+                done.countDown();
+            }
+        };
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            String dataUrl = dataUrls[i];
+            int priority = i % 2 == 0 ? RecognitionScheduler.PRIORITY_INTERACTIVE : RecognitionScheduler.PRIORITY_BACKGROUND;
+            scheduler.submit(null, priority, callback, job -> callback.success(recognize(dataUrl)));
+        }
+        done.await();
+    }
+}
@@ -0,0 +1,59 @@
+package com.eov.cordova.watermeter;
+
+import android.graphics.Bitmap;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Stand-in for the SDK Predictor and encoded camera frames
+ * Inference busy-spins for a configurable time (it is CPU bound on device), and a semaphore
+ * caps concurrent inferences like the predictor pool does.
+ */
+final class StandInPredictor {
+
+    static final String TEXT = "0012345";
+    static final float CONFIDENCE = 0.97f;
+    static final int WIDTH = 1280;
+    static final int HEIGHT = 960;
+
+    private final long inferenceNanos;
+    private final Semaphore slots;
+
+    StandInPredictor(long inferenceMicros, int poolSize) {
+        this.inferenceNanos = inferenceMicros * 1000;
+        this.slots = new Semaphore(poolSize, true);
+    }
+
+    /**
+     * Random bytes behind a WIDTH x HEIGHT header in the BitmapFactory stand-in's format,
+     * standing in for an encoded camera frame
+     */
+    static byte[] fakeImage(int size, long seed) {
+        byte[] bytes = new byte[Math.max(8, size)];
+        new Random(seed).nextBytes(bytes);
+        ByteBuffer.wrap(bytes).putInt(WIDTH).putInt(HEIGHT);
+        return bytes;
+    }
+
+    /**
+     * Bitmap whose compress() writes the given bytes back, for the encode side of the bridge
+     */
+    static Bitmap encodedBitmap(byte[] encoded) {
+        return new Bitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888, encoded);
+    }
+
+    String run(Bitmap bitmap) throws InterruptedException {
+        slots.acquire();
+        try {
+            long deadline = System.nanoTime() + inferenceNanos;
+            while (System.nanoTime() < deadline) {
+                // Busy wait, inference keeps a core busy
+            }
+            return TEXT;
+        } finally {
+            slots.release();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package android.graphics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * JVM stand-in for android.graphics.Bitmap
+ * Holds no pixels; compress() writes a pre-encoded payload so the benchmark measures the
+ * bridge work around the codec (buffering, base64, strings) rather than libjpeg. Bitmaps from
+ * createBitmap are mutable and can be pooled.
+ */
+public class Bitmap {
+
+    public enum Config {
+        ARGB_8888, RGB_565
+    }
+
+    public enum CompressFormat {
+        JPEG, PNG, WEBP
+    }
+
+    private final int width;
+    private final int height;
+    private final Config config;
+    private final byte[] encoded;
+    private final boolean mutable;
+    private boolean recycled;
+
+    public Bitmap(int width, int height, Config config, byte[] encoded) {
+        this(width, height, config, encoded, false);
+    }
+
+    private Bitmap(int width, int height, Config config, byte[] encoded, boolean mutable) {
+        this.width = width;
+        this.height = height;
+        this.config = config;
+        this.encoded = encoded;
+        this.mutable = mutable;
+    }
+
+    public static Bitmap createBitmap(int width, int height, Config config) {
+        return new Bitmap(width, height, config, new byte[0], true);
+    }
+
+    public boolean compress(CompressFormat format, int quality, OutputStream stream) {
+        try {
+            stream.write(encoded);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public Config getConfig() {
+        return config;
+    }
+
+    public int getByteCount() {
+        return width * height * (config == Config.RGB_565 ? 2 : 4);
+    }
+
+    public int getAllocationByteCount() {
+        return getByteCount();
+    }
+
+    public boolean isMutable() {
+        return mutable;
+    }
+
+    public void recycle() {
+        recycled = true;
+    }
+
+    public boolean isRecycled() {
+        return recycled;
+    }
+}
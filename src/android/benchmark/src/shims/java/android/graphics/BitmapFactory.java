@@ -0,0 +1,63 @@
+package android.graphics;
+
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * JVM stand-in for android.graphics.BitmapFactory
+ * "Images" are two big-endian ints, width then height. Decoding honours inJustDecodeBounds,
+ * inSampleSize and inPreferredConfig; an inBitmap that is too small is rejected like on
+ * Android, otherwise it is reshaped to the output size and returned.
+ */
+public class BitmapFactory {
+
+    public static class Options {
+        public boolean inJustDecodeBounds;
+        public int inSampleSize;
+        public Bitmap.Config inPreferredConfig = Bitmap.Config.ARGB_8888;
+        public boolean inMutable;
+        public Bitmap inBitmap;
+        public int outWidth;
+        public int outHeight;
+    }
+
+    public static Bitmap decodeFile(String path, Options options) {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(path))) {
+            return decode(in.readInt(), in.readInt(), options);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public static Bitmap decodeByteArray(byte[] data, int offset, int length, Options options) {
+        if (length < 8) {
+            return null;
+        }
+        ByteBuffer header = ByteBuffer.wrap(data, offset, length);
+        return decode(header.getInt(), header.getInt(), options);
+    }
+
+    static Bitmap decode(int width, int height, Options options) {
+        if (options.inJustDecodeBounds) {
+            options.outWidth = width;
+            options.outHeight = height;
+            return null;
+        }
+        int sampleSize = Math.max(1, options.inSampleSize);
+        options.outWidth = width / sampleSize;
+        options.outHeight = height / sampleSize;
+        Bitmap.Config config = options.inPreferredConfig != null ? options.inPreferredConfig : Bitmap.Config.ARGB_8888;
+        Bitmap output = Bitmap.createBitmap(options.outWidth, options.outHeight, config);
+        if (options.inBitmap != null) {
+            if (!options.inBitmap.isMutable() || options.inBitmap.getAllocationByteCount() < output.getByteCount()) {
+                throw new IllegalArgumentException("Problem decoding into existing bitmap");
+            }
+            // Android reconfigures the reused bitmap to the decoded size; the stand-in hands
+            // back a bitmap of that size and marks the reused one consumed
+            options.inBitmap.recycle();
+        }
+        return output;
+    }
+}
@@ -0,0 +1,48 @@
+package android.graphics;
+
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * JVM stand-in for android.graphics.BitmapRegionDecoder, reading the BitmapFactory stand-in format
+ * Like Android, decoding into inBitmap keeps that bitmap's size instead of resizing it.
+ */
+public final class BitmapRegionDecoder {
+
+    private final int width;
+    private final int height;
+
+    private BitmapRegionDecoder(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    public static BitmapRegionDecoder newInstance(String path, boolean shareable) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(path))) {
+            return new BitmapRegionDecoder(in.readInt(), in.readInt());
+        }
+    }
+
+    public static BitmapRegionDecoder newInstance(byte[] data, int offset, int length, boolean shareable) throws IOException {
+        if (length < 8) {
+            throw new IOException("Image format not supported");
+        }
+        ByteBuffer header = ByteBuffer.wrap(data, offset, length);
+        return new BitmapRegionDecoder(header.getInt(), header.getInt());
+    }
+
+    public Bitmap decodeRegion(Rect rect, BitmapFactory.Options options) {
+        if (rect.right > width || rect.bottom > height) {
+            throw new IllegalArgumentException("rectangle is outside the image");
+        }
+        if (options.inBitmap != null) {
+            return options.inBitmap;
+        }
+        return BitmapFactory.decode(rect.width(), rect.height(), options);
+    }
+
+    public void recycle() {
+    }
+}
@@ -0,0 +1,32 @@
+package android.util;
+
+/**
+ * JVM stand-in for android.util.Base64, backed by java.util.Base64
+ */
+public class Base64 {
+
+    public static final int DEFAULT = 0;
+    public static final int NO_PADDING = 1;
+    public static final int NO_WRAP = 2;
+    public static final int URL_SAFE = 8;
+
+    public static byte[] decode(byte[] input, int offset, int len, int flags) {
+        // Android's decoder skips line breaks and whitespace, like the MIME decoder
+        java.nio.ByteBuffer buffer = java.nio.ByteBuffer.wrap(input, offset, len);
+        java.nio.ByteBuffer decoded = java.util.Base64.getMimeDecoder().decode(buffer);
+        byte[] out = new byte[decoded.remaining()];
+        decoded.get(out);
+        return out;
+    }
+
+    public static byte[] decode(String str, int flags) {
+        return java.util.Base64.getMimeDecoder().decode(str);
+    }
+
+    public static String encodeToString(byte[] input, int flags) {
+        if ((flags & NO_WRAP) != 0) {
+            return java.util.Base64.getEncoder().encodeToString(input);
+        }
+        return java.util.Base64.getMimeEncoder(76, new byte[] {'\n'}).encodeToString(input) + "\n";
+    }
+}
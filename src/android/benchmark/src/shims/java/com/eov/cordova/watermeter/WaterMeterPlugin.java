@@ -0,0 +1,41 @@
+package com.eov.cordova.watermeter;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * JVM stand-in for the plugin's static helpers used by the batch, import and cache classes
+ * The real WaterMeterPlugin needs CordovaPlugin and an Activity; these two helpers are copied unchanged.
+ */
+final class WaterMeterPlugin {
+
+    private WaterMeterPlugin() {
+    }
+
+    static void sendUpdate(CallbackContext callbackContext, JSONObject message) {
+        PluginResult pluginResult = new PluginResult(PluginResult.Status.OK, message);
+        pluginResult.setKeepCallback(true);
+        callbackContext.sendPluginResult(pluginResult);
+    }
+
+    static byte[] readFile(File file) throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        try (InputStream in = new FileInputStream(file)) {
+            int read = 0;
+            while (read < bytes.length) {
+                int count = in.read(bytes, read, bytes.length - read);
+                if (count < 0) {
+                    throw new IOException("Unexpected end of file: " + file.getPath());
+                }
+                read += count;
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,21 @@
+package org.apache.cordova;
+
+import org.json.JSONObject;
+
+/**
+ * JVM stand-in for Cordova's CallbackContext; benchmarks override the methods they observe
+ */
+public class CallbackContext {
+
+    public void sendPluginResult(PluginResult result) {
+    }
+
+    public void success(JSONObject message) {
+    }
+
+    public void success(String message) {
+    }
+
+    public void error(String message) {
+    }
+}
@@ -0,0 +1,38 @@
+package org.apache.cordova;
+
+import org.json.JSONObject;
+
+/**
+ * JVM stand-in for Cordova's PluginResult
+ */
+public class PluginResult {
+
+    public enum Status {
+        OK, ERROR
+    }
+
+    private final Status status;
+    private final String message;
+    private boolean keepCallback;
+
+    public PluginResult(Status status, JSONObject message) {
+        this.status = status;
+        this.message = message.toString();
+    }
+
+    public void setKeepCallback(boolean keepCallback) {
+        this.keepCallback = keepCallback;
+    }
+
+    public boolean getKeepCallback() {
+        return keepCallback;
+    }
+
+    public int getStatus() {
+        return status.ordinal();
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,222 @@
+package com.eov.cordova.watermeter;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AuditLogTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<AuditLog> opened = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        for (AuditLog log : opened) {
+            log.close();
+        }
+    }
+
+    @Test
+    public void intactLogVerifiesAfterReopen() throws Exception {
+        File dir = folder.getRoot();
+        AuditLog log = open(dir, 1);
+        appendReadings(log, 5);
+        assertTrue(log.verify().getBoolean("valid"));
+        closeAndWait(log);
+
+        JSONObject result = open(dir, 1).verify();
+        assertTrue(result.toString(), result.getBoolean("valid"));
+        assertEquals(5, result.getLong("records"));
+    }
+
+    @Test
+    public void editedRecordBreaksChain() throws Exception {
+        File dir = folder.getRoot();
+        AuditLog log = open(dir, 1);
+        appendReadings(log, 3);
+        closeAndWait(log);
+
+        File segment = segmentFile(dir);
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            // Last byte of the last record's payload, just before its MAC
+            long position = file.length() - 33;
+            file.seek(position);
+            int value = file.read();
+            file.seek(position);
+            file.write(value ^ 1);
+        }
+
+        JSONObject result = open(dir, 1).verify();
+        assertFalse(result.getBoolean("valid"));
+        assertEquals("hash", result.getJSONObject("brokenAt").getString("reason"));
+        assertEquals(2, result.getJSONObject("brokenAt").getLong("seq"));
+    }
+
+    @Test
+    public void removedTailIsReportedAgainstCheckpoint() throws Exception {
+        File dir = folder.getRoot();
+        AuditLog log = open(dir, 1);
+        appendReadings(log, 4);
+        closeAndWait(log);
+
+        // Cut the last whole record; the remaining chain is still internally consistent
+        File segment = segmentFile(dir);
+        long lastRecordBytes = lastRecordBytes(segment);
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.setLength(file.length() - lastRecordBytes);
+        }
+
+        AuditLog reopened = open(dir, 1);
+        appendReadings(reopened, 1);
+        JSONObject result = reopened.verify();
+        assertFalse(result.getBoolean("valid"));
+        assertEquals("checkpoint", result.getJSONObject("brokenAt").getString("reason"));
+        assertEquals(3, result.getJSONObject("brokenAt").getLong("seq"));
+    }
+
+    @Test
+    public void deletedCheckpointIsReported() throws Exception {
+        File dir = folder.getRoot();
+        AuditLog log = open(dir, 1);
+        appendReadings(log, 2);
+        closeAndWait(log);
+
+        assertTrue(new File(dir, "head.chk").delete());
+
+        JSONObject result = open(dir, 1).verify();
+        assertFalse(result.getBoolean("valid"));
+        assertEquals("checkpoint", result.getJSONObject("brokenAt").getString("reason"));
+    }
+
+    @Test
+    public void tornTailIsDroppedWithoutBreakingChain() throws Exception {
+        File dir = folder.getRoot();
+        AuditLog log = open(dir, 1);
+        appendReadings(log, 2);
+        closeAndWait(log);
+
+        File segment = segmentFile(dir);
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            // Length prefix of a record whose body never made it to disk
+            file.seek(file.length());
+            file.writeInt(200);
+            file.write(new byte[10]);
+        }
+
+        JSONObject result = open(dir, 1).verify();
+        assertTrue(result.toString(), result.getBoolean("valid"));
+        assertEquals(2, result.getLong("records"));
+    }
+
+    @Test
+    public void otherKeyIsReported() throws Exception {
+        File dir = folder.getRoot();
+        AuditLog log = open(dir, 1);
+        appendReadings(log, 2);
+        closeAndWait(log);
+
+        JSONObject result = open(dir, 2).verify();
+        assertFalse(result.getBoolean("valid"));
+        assertEquals("key", result.getJSONObject("brokenAt").getString("reason"));
+    }
+
+    @Test
+    public void closeWritesQueuedRecords() throws Exception {
+        File dir = folder.getRoot();
+        AuditLog log = open(dir, 1);
+        for (int i = 0; i < 200; i++) {
+            log.appendAsync(entry(AuditLog.SOURCE_RECOGNIZE, "00" + i, false));
+        }
+        closeAndWait(log);
+
+        JSONObject result = open(dir, 1).verify();
+        assertTrue(result.toString(), result.getBoolean("valid"));
+        assertEquals(200, result.getLong("records"));
+    }
+
+    @Test
+    public void queryReportsSourceAndCachedFlag() throws Exception {
+        AuditLog log = open(folder.getRoot(), 1);
+        log.append(entry(AuditLog.SOURCE_CONSENSUS, "00123", false));
+        log.append(entry(AuditLog.SOURCE_RECOGNIZE, "00123", true));
+
+        JSONArray entries = log.query(null).getJSONArray("entries");
+        assertEquals(2, entries.length());
+        // Newest first
+        assertEquals("recognize", entries.getJSONObject(0).getString("source"));
+        assertTrue(entries.getJSONObject(0).optBoolean("cached"));
+        assertEquals("consensus", entries.getJSONObject(1).getString("source"));
+        assertFalse(entries.getJSONObject(1).has("cached"));
+    }
+
+    private AuditLog open(File dir, int keySeed) {
+        byte[] raw = new byte[32];
+        raw[0] = (byte) keySeed;
+        AuditLog log = new AuditLog(dir, () -> new SecretKeySpec(raw, "HmacSHA256"));
+        opened.add(log);
+        return log;
+    }
+
+    private static void appendReadings(AuditLog log, int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            log.append(entry(AuditLog.SOURCE_RECOGNIZE, "0012" + i, false));
+        }
+    }
+
+    private static AuditLog.Entry entry(byte source, String reading, boolean cached) throws Exception {
+        JSONObject result = new JSONObject();
+        result.put("text", reading);
+        result.put("reading", reading);
+        result.put("confidence", 0.9);
+        result.put("isReliable", true);
+        if (cached) {
+            result.put("cached", true);
+        }
+        return new AuditLog.Entry(source, result, null, "meter-1", null);
+    }
+
+    private static void closeAndWait(AuditLog log) throws Exception {
+        log.close();
+        // close() returns before the writer thread has closed the files
+        assertTrue(log.awaitClosed(5, TimeUnit.SECONDS));
+    }
+
+    private static File segmentFile(File dir) {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".wml"));
+        assertEquals(1, files.length);
+        return files[0];
+    }
+
+    /**
+     * Bytes of the last record: walk the length prefixes from the header
+     */
+    private static long lastRecordBytes(File segment) throws Exception {
+        try (RandomAccessFile file = new RandomAccessFile(segment, "r")) {
+            long position = 4 + 1 + 8 + 8 + 8 + 32;
+            long last = 0;
+            while (position < file.length()) {
+                file.seek(position);
+                last = 4 + file.readInt() + 32;
+                position += last;
+            }
+            return last;
+        }
+    }
+}
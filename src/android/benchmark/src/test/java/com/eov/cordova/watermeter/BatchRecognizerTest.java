@@ -0,0 +1,81 @@
+package com.eov.cordova.watermeter;
+
+import android.graphics.Bitmap;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BatchRecognizerTest {
+
+    private final RecognitionScheduler scheduler = new RecognitionScheduler(1);
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void cancelStopsBeforeTheNextItem() throws Exception {
+        RecognitionScheduler.Job job = scheduler.track("batch-1", RecognitionScheduler.PRIORITY_BACKGROUND,
+            new CallbackContext());
+        List<String> recognized = Collections.synchronizedList(new ArrayList<String>());
+        BatchRecognizer.Engine engine = new BatchRecognizer.Engine() {
+            @Override
+            public Bitmap decode(String path) {
+                return new Bitmap(1, 1, Bitmap.Config.ARGB_8888, new byte[0]);
+            }
+
+            @Override
+            public JSONObject recognize(String path, Bitmap bitmap, RecognitionMetrics.Timings timings) {
+                recognized.add(path);
+                if (recognized.size() == 2) {
+                    scheduler.cancel("batch-1");
+                }
+                return BridgeCodec.buildResult("00123", 0.9f);
+            }
+
+            @Override
+            public void release(Bitmap bitmap) {
+            }
+        };
+        List<Boolean> keepCallbacks = new ArrayList<>();
+        final JSONObject[] summary = new JSONObject[1];
+        CallbackContext callback = new CallbackContext() {
+            @Override
+            public void sendPluginResult(PluginResult result) {
+                keepCallbacks.add(result.getKeepCallback());
+            }
+
+            @Override
+            public void success(JSONObject message) {
+                summary[0] = message;
+            }
+        };
+        JSONArray paths = new JSONArray();
+        for (int i = 0; i < 5; i++) {
+            paths.put("/images/" + i + ".jpg");
+        }
+
+        new BatchRecognizer(engine, new JSONObject()).run(paths, job, callback);
+
+        assertEquals(2, recognized.size());
+        assertTrue(summary[0].getBoolean("cancelled"));
+        assertEquals(2, summary[0].getInt("completed"));
+        assertEquals(5, summary[0].getInt("total"));
+        assertEquals(2, summary[0].getJSONArray("results").length());
+        // One progress event per finished item, each keeping the callback open
+        assertEquals(2, keepCallbacks.size());
+        assertTrue(keepCallbacks.get(0) && keepCallbacks.get(1));
+    }
+}
@@ -0,0 +1,78 @@
+package com.eov.cordova.watermeter;
+
+import android.graphics.Bitmap;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BitmapPoolTest {
+
+    private static final long LARGE = 64L * 1024 * 1024;
+
+    @Test
+    public void getReturnsSmallestBitmapThatFits() {
+        BitmapPool pool = new BitmapPool(LARGE);
+        Bitmap small = Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888);
+        Bitmap medium = Bitmap.createBitmap(200, 200, Bitmap.Config.ARGB_8888);
+        Bitmap large = Bitmap.createBitmap(400, 400, Bitmap.Config.ARGB_8888);
+        pool.put(large);
+        pool.put(small);
+        pool.put(medium);
+
+        assertSame(medium, pool.get(150, 150, Bitmap.Config.ARGB_8888));
+        assertSame(small, pool.get(100, 100, Bitmap.Config.ARGB_8888));
+        assertSame(large, pool.get(201, 201, Bitmap.Config.ARGB_8888));
+    }
+
+    @Test
+    public void getRejectsBitmapsMoreThanFourTimesTooLarge() throws Exception {
+        BitmapPool pool = new BitmapPool(LARGE);
+        pool.put(Bitmap.createBitmap(400, 400, Bitmap.Config.ARGB_8888));
+
+        assertNull(pool.get(199, 199, Bitmap.Config.ARGB_8888));
+        assertTrue(pool.get(200, 200, Bitmap.Config.ARGB_8888) != null);
+        assertEquals(1, pool.stats().getLong("misses"));
+        assertEquals(1, pool.stats().getLong("hits"));
+    }
+
+    @Test
+    public void getAccountsForConfigBytesPerPixel() {
+        BitmapPool pool = new BitmapPool(LARGE);
+        Bitmap rgb565 = Bitmap.createBitmap(100, 100, Bitmap.Config.RGB_565);
+        pool.put(rgb565);
+
+        assertNull(pool.get(100, 100, Bitmap.Config.ARGB_8888));
+        assertSame(rgb565, pool.get(100, 100, Bitmap.Config.RGB_565));
+    }
+
+    @Test
+    public void putRecyclesImmutableBitmaps() throws Exception {
+        BitmapPool pool = new BitmapPool(LARGE);
+        Bitmap immutable = new Bitmap(100, 100, Bitmap.Config.ARGB_8888, new byte[0]);
+        pool.put(immutable);
+
+        assertTrue(immutable.isRecycled());
+        assertEquals(0, pool.stats().getInt("entries"));
+    }
+
+    @Test
+    public void putEvictsLargestFirstOverBudget() throws Exception {
+        BitmapPool pool = new BitmapPool(100 * 100 * 4 * 3);
+        Bitmap large = Bitmap.createBitmap(100, 200, Bitmap.Config.ARGB_8888);
+        Bitmap first = Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888);
+        Bitmap second = Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888);
+        pool.put(large);
+        pool.put(first);
+        pool.put(second);
+
+        assertTrue(large.isRecycled());
+        assertFalse(first.isRecycled());
+        assertFalse(second.isRecycled());
+        assertEquals(1, pool.stats().getLong("evictions"));
+    }
+}
@@ -0,0 +1,68 @@
+package com.eov.cordova.watermeter;
+
+import org.junit.Test;
+
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class BridgeCodecTest {
+
+    @Test
+    public void shortInputsMatchJdkEncoder() {
+        for (int length = 0; length <= 4; length++) {
+            byte[] data = new byte[length];
+            for (int i = 0; i < length; i++) {
+                data[i] = (byte) (0xff - i * 37);
+            }
+            assertEncodes(data);
+        }
+    }
+
+    @Test
+    public void largeRandomInputsMatchJdkEncoder() {
+        Random random = new Random(42);
+        int[] lengths = {
+            1000, 64 * 1024 + 1, BridgeCodec.MAX_RETAINED_BUFFER - 1, BridgeCodec.MAX_RETAINED_BUFFER + 2,
+            3 * BridgeCodec.MAX_RETAINED_BUFFER
+        };
+        for (int length : lengths) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+            assertEncodes(data);
+        }
+    }
+
+    @Test
+    public void reusedBufferDoesNotLeakLongerOutput() {
+        Random random = new Random(7);
+        byte[] longer = new byte[3000];
+        random.nextBytes(longer);
+        assertEncodes(longer);
+        // Same thread, smaller input: must not carry characters of the previous encode
+        assertEncodes(new byte[] {1, 2});
+        assertEncodes(new byte[0]);
+    }
+
+    @Test
+    public void oversizedInputIsNotRetained() throws Exception {
+        byte[] small = new byte[100];
+        BridgeCodec.toJpegDataUrl(small);
+        BridgeCodec.toJpegDataUrl(new byte[BridgeCodec.MAX_RETAINED_BUFFER + 1]);
+        long hits = BridgeCodec.bufferStats().getLong("hits");
+
+        // The first small encode after the oversized one starts from fresh buffers
+        BridgeCodec.toJpegDataUrl(small);
+        assertEquals(hits, BridgeCodec.bufferStats().getLong("hits"));
+        BridgeCodec.toJpegDataUrl(small);
+        assertEquals(hits + 1, BridgeCodec.bufferStats().getLong("hits"));
+    }
+
+    private static void assertEncodes(byte[] data) {
+        String dataUrl = BridgeCodec.toJpegDataUrl(data);
+        assertEquals(BridgeCodec.JPEG_DATA_URL_PREFIX + Base64.getEncoder().encodeToString(data), dataUrl);
+        assertArrayEquals(data, BridgeCodec.decodeBase64Image(dataUrl));
+    }
+}
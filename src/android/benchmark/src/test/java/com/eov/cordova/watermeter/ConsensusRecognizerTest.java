@@ -0,0 +1,90 @@
+package com.eov.cordova.watermeter;
+
+import android.graphics.Bitmap;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ConsensusRecognizerTest {
+
+    @Test
+    public void heaviestLengthWinsBeforeCharacters() throws Exception {
+        // One confident 4-digit frame loses to two weaker 5-digit frames with more total weight
+        ConsensusRecognizer.Vote vote = ConsensusRecognizer.vote(Arrays.asList(
+            frame("12345", 0.5), frame("12345", 0.4), frame("1234", 0.8)));
+
+        assertEquals("12345", vote.reading);
+        assertEquals(2, vote.supporting);
+        assertEquals(0.45, vote.confidence, 1e-9);
+        assertEquals(0.9 / 1.7, vote.agreement, 1e-9);
+    }
+
+    @Test
+    public void eachPositionTakesTheHeaviestDigit() throws Exception {
+        // Two weak frames agree on an 8, one confident frame reads 4
+        ConsensusRecognizer.Vote vote = ConsensusRecognizer.vote(Arrays.asList(
+            frame("12345", 0.9), frame("12385", 0.3), frame("12385", 0.3)));
+
+        assertEquals("12345", vote.reading);
+        assertEquals(1, vote.supporting);
+        assertEquals(0.9, vote.confidence, 1e-9);
+        // Four unanimous positions and one at 0.9 / 1.5
+        assertEquals((4 + 0.6) / 5, vote.agreement, 1e-9);
+    }
+
+    @Test
+    public void fusedReadingNeedNotMatchAnyFrame() throws Exception {
+        ConsensusRecognizer.Vote vote = ConsensusRecognizer.vote(Arrays.asList(
+            frame("1299", 0.6), frame("9234", 0.7), frame("1234", 0.2)));
+
+        assertEquals("1234", vote.reading);
+        assertEquals(1, vote.supporting);
+    }
+
+    @Test
+    public void noReadingsGiveNoVote() {
+        assertNull(ConsensusRecognizer.vote(Collections.<JSONObject>emptyList()));
+    }
+
+    @Test
+    public void clearVoteStopsBeforeRemainingFrames() throws Exception {
+        ConsensusRecognizer.Engine engine = new ConsensusRecognizer.Engine() {
+            @Override
+            public Bitmap decode(int index) {
+                return new Bitmap(1, 1, Bitmap.Config.ARGB_8888, new byte[0]);
+            }
+
+            @Override
+            public JSONObject recognize(int index, Bitmap bitmap, RecognitionMetrics.Timings timings) throws Exception {
+                return frame("00123", 0.9);
+            }
+
+            @Override
+            public void release(Bitmap bitmap) {
+            }
+        };
+        JSONObject options = new JSONObject();
+        options.put("minFrames", 2);
+
+        JSONObject result = new ConsensusRecognizer(engine, 5, 1, options).run(null);
+
+        assertEquals("00123", result.getString("text"));
+        assertTrue(result.getBoolean("stoppedEarly"));
+        assertEquals(2, result.getInt("framesUsed"));
+        assertEquals(5, result.getInt("framesTotal"));
+    }
+
+    private static JSONObject frame(String reading, double confidence) throws Exception {
+        JSONObject frame = new JSONObject();
+        frame.put("reading", reading);
+        frame.put("confidence", confidence);
+        return frame;
+    }
+}
@@ -0,0 +1,178 @@
+package com.eov.cordova.watermeter;
+
+import android.graphics.Bitmap;
+
+import org.apache.cordova.CallbackContext;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DirectoryImporterTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final RecognitionScheduler scheduler = new RecognitionScheduler(1);
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void braceGlobMatchesAlternativesIgnoringCase() {
+        Pattern glob = DirectoryImporter.compileGlob(DirectoryImporter.DEFAULT_GLOB);
+
+        assertTrue(glob.matcher("a.jpg").matches());
+        assertTrue(glob.matcher("b.JPEG").matches());
+        assertTrue(glob.matcher("c.png").matches());
+        assertFalse(glob.matcher("d.gif").matches());
+        assertFalse(glob.matcher("jpg").matches());
+        assertFalse(glob.matcher("e.jpg.txt").matches());
+    }
+
+    @Test
+    public void globQuotesLiteralsAndMatchesSingleCharacters() {
+        Pattern glob = DirectoryImporter.compileGlob("img_??.png");
+
+        assertTrue(glob.matcher("img_01.png").matches());
+        assertFalse(glob.matcher("img_1.png").matches());
+        assertFalse(glob.matcher("img_01xpng").matches());
+        // A comma outside braces is a literal
+        assertTrue(DirectoryImporter.compileGlob("a,b").matcher("a,b").matches());
+    }
+
+    @Test
+    public void comparePathsFollowsTheWalkOrder() {
+        // The walk visits sorted names and descends into a directory where its name sorts
+        assertTrue(DirectoryImporter.comparePaths("a/z.jpg", "a.jpg") < 0);
+        assertTrue(DirectoryImporter.comparePaths("a", "a/b.jpg") < 0);
+        assertTrue(DirectoryImporter.comparePaths("a/b/c.jpg", "b.jpg") < 0);
+        assertTrue(DirectoryImporter.comparePaths("b.jpg", "a/z.jpg") > 0);
+        assertEquals(0, DirectoryImporter.comparePaths("a/b.jpg", "a/b.jpg"));
+        assertTrue(DirectoryImporter.comparePaths("x", "") > 0);
+    }
+
+    @Test
+    public void resumeDropsUncheckpointedLinesAndContinues() throws Exception {
+        File images = folder.newFolder("images");
+        for (String name : new String[] {"a.jpg", "b.jpg", "d.png", "e.txt", "sub/c.jpg"}) {
+            File file = new File(images, name);
+            file.getParentFile().mkdirs();
+            assertTrue(file.createNewFile());
+        }
+        File stateDir = new File(folder.getRoot(), "state");
+
+        // First run stops after two images, as if the app was interrupted
+        RecordingEngine engine = new RecordingEngine(2);
+        JSONObject first = runImport(engine, stateDir, images, new JSONObject());
+        assertFalse(first.getBoolean("complete"));
+        assertEquals(2, first.getInt("processed"));
+
+        // A line written after the last checkpoint, e.g. before a crash
+        File output = new File(first.getString("outputPath"));
+        try (FileOutputStream out = new FileOutputStream(output, true)) {
+            out.write("{\"path\":\"torn\"}\n".getBytes(UTF8));
+        }
+
+        JSONObject options = new JSONObject();
+        options.put("resumeToken", first.getString("resumeToken"));
+        JSONObject second = runImport(new RecordingEngine(-1), stateDir, images, options);
+
+        assertTrue(second.getBoolean("complete"));
+        assertTrue(second.getBoolean("resumed"));
+        assertEquals(4, second.getInt("processed"));
+        assertEquals(2, second.getInt("newlyProcessed"));
+        assertEquals(Arrays.asList("a.jpg", "b.jpg", "d.png", "sub/c.jpg"), outputPaths(output));
+    }
+
+    @Test
+    public void resumeTokenCannotLeaveStateDir() throws Exception {
+        File images = folder.newFolder("images");
+        assertTrue(new File(images, "a.jpg").createNewFile());
+        File stateDir = new File(folder.getRoot(), "state");
+        JSONObject options = new JSONObject();
+        options.put("resumeToken", "../outside");
+
+        JSONObject summary = runImport(new RecordingEngine(-1), stateDir, images, options);
+
+        File output = new File(summary.getString("outputPath"));
+        assertEquals(stateDir.getAbsoluteFile(), output.getParentFile());
+        assertFalse(new File(folder.getRoot(), "outside.ndjson").exists());
+    }
+
+    private JSONObject runImport(RecordingEngine engine, File stateDir, File images, JSONObject options)
+            throws Exception {
+        JSONObject importerOptions = new JSONObject();
+        importerOptions.put("checkpointEvery", 1);
+        RecognitionScheduler.Job job = scheduler.track(null, RecognitionScheduler.PRIORITY_BACKGROUND,
+            new CallbackContext());
+        engine.job = job;
+        final JSONObject[] summary = new JSONObject[1];
+        CallbackContext callback = new CallbackContext() {
+            @Override
+            public void success(JSONObject message) {
+                summary[0] = message;
+            }
+        };
+        new DirectoryImporter(engine, stateDir, importerOptions).run(images.getPath(), "", options, job, callback);
+        scheduler.finish(job, RecognitionScheduler.STATE_COMPLETED);
+        return summary[0];
+    }
+
+    private static List<String> outputPaths(File output) throws Exception {
+        List<String> paths = new ArrayList<>();
+        for (String line : new String(WaterMeterPlugin.readFile(output), UTF8).split("\n")) {
+            if (!line.isEmpty()) {
+                paths.add(new JSONObject(line).getString("path"));
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Engine that reads the file name and cancels its job after a number of images
+     */
+    private final class RecordingEngine implements BatchRecognizer.Engine {
+        private final int cancelAfter;
+        private int recognized;
+        RecognitionScheduler.Job job;
+
+        RecordingEngine(int cancelAfter) {
+            this.cancelAfter = cancelAfter;
+        }
+
+        @Override
+        public Bitmap decode(String path) {
+            return new Bitmap(1, 1, Bitmap.Config.ARGB_8888, new byte[0]);
+        }
+
+        @Override
+        public JSONObject recognize(String path, Bitmap bitmap, RecognitionMetrics.Timings timings) {
+            if (++recognized == cancelAfter) {
+                scheduler.cancel(job.id);
+            }
+            return BridgeCodec.buildResult(new File(path).getName(), 0.9f);
+        }
+
+        @Override
+        public void release(Bitmap bitmap) {
+        }
+    }
+}
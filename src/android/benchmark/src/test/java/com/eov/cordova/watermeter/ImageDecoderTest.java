@@ -0,0 +1,71 @@
+package com.eov.cordova.watermeter;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class ImageDecoderTest {
+
+    @Test
+    public void sampleSizeKeepsLongSideAtOrAboveMax() {
+        assertEquals(1, ImageDecoder.computeSampleSize(1920, 1080, 1920));
+        assertEquals(1, ImageDecoder.computeSampleSize(3839, 2160, 1920));
+        assertEquals(2, ImageDecoder.computeSampleSize(3840, 2160, 1920));
+        assertEquals(2, ImageDecoder.computeSampleSize(2160, 4000, 1920));
+        assertEquals(4, ImageDecoder.computeSampleSize(8000, 6000, 1920));
+    }
+
+    @Test
+    public void sampleSizeIsOneForSmallImagesOrNoLimit() {
+        assertEquals(1, ImageDecoder.computeSampleSize(640, 480, 1920));
+        assertEquals(1, ImageDecoder.computeSampleSize(8000, 6000, 0));
+        assertEquals(1, ImageDecoder.computeSampleSize(8000, 6000, -1));
+    }
+
+    @Test
+    public void fullDecodeReusesPooledBitmap() throws Exception {
+        BitmapPool pool = new BitmapPool(64L * 1024 * 1024);
+        Bitmap pooled = Bitmap.createBitmap(1000, 500, Bitmap.Config.ARGB_8888);
+        pool.put(pooled);
+
+        ImageDecoder.Options options = new ImageDecoder.Options();
+        options.pool = pool;
+        Bitmap bitmap = ImageDecoder.decodeByteArray(image(800, 400), 0, 8, options);
+
+        assertEquals(800, bitmap.getWidth());
+        assertEquals(400, bitmap.getHeight());
+        assertEquals(1, pool.stats().getLong("hits"));
+    }
+
+    @Test
+    public void regionDecodeNeverUsesPooledBitmap() throws Exception {
+        BitmapPool pool = new BitmapPool(64L * 1024 * 1024);
+        Bitmap pooled = Bitmap.createBitmap(400, 200, Bitmap.Config.ARGB_8888);
+        pool.put(pooled);
+
+        ImageDecoder.Options options = new ImageDecoder.Options();
+        options.pool = pool;
+        options.roi = new Rect(100, 100, 300, 200);
+        Bitmap bitmap = ImageDecoder.decodeByteArray(image(2000, 1000), 0, 8, options);
+
+        assertNotSame(pooled, bitmap);
+        assertEquals(200, bitmap.getWidth());
+        assertEquals(100, bitmap.getHeight());
+        assertEquals(0, pool.stats().getLong("hits"));
+        assertSame(pooled, pool.get(400, 200, Bitmap.Config.ARGB_8888));
+    }
+
+    /**
+     * Image in the BitmapFactory stand-in format
+     */
+    private static byte[] image(int width, int height) {
+        return ByteBuffer.allocate(8).putInt(width).putInt(height).array();
+    }
+}
@@ -0,0 +1,107 @@
+package com.eov.cordova.watermeter;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ReadingValidatorTest {
+
+    @Test
+    public void plainDigitsUseDecimalPlaces() throws Exception {
+        JSONObject result = validate("0012345", meter(3));
+
+        assertEquals("0012345", result.getString("reading"));
+        assertEquals("12.345", result.getString("formattedReading"));
+        assertTrue(result.getBoolean("isReliable"));
+    }
+
+    @Test
+    public void separatorPositionIsKept() throws Exception {
+        JSONObject result = validate("123.45", meter(3));
+
+        assertEquals("12345", result.getString("reading"));
+        assertEquals("123.45", result.getString("formattedReading"));
+        assertFalse(result.getBoolean("isReliable"));
+        assertEquals(ReadingValidator.ISSUE_DECIMAL_MISMATCH, result.getJSONArray("issues").getString(0));
+    }
+
+    @Test
+    public void matchingSeparatorIsReliable() throws Exception {
+        JSONObject result = validate("12,345", meter(3));
+
+        assertEquals("12.345", result.getString("formattedReading"));
+        assertTrue(result.getBoolean("isReliable"));
+    }
+
+    @Test
+    public void zeroDecimalPlacesKeepsDigits() throws Exception {
+        JSONObject result = validate("0012345", meter(0));
+
+        assertEquals("0012345", result.getString("formattedReading"));
+        assertTrue(result.getBoolean("isReliable"));
+    }
+
+    @Test
+    public void leadingAndTrailingSeparatorsAreIgnored() throws Exception {
+        JSONObject result = validate(".12345.", meter(3));
+
+        assertEquals("12.345", result.getString("formattedReading"));
+        assertTrue(result.getBoolean("isReliable"));
+    }
+
+    @Test
+    public void unitSuffixWithoutMeterOptionsIsReliable() throws Exception {
+        JSONObject result = validate("123.45 m3", new JSONObject());
+
+        assertEquals("12345", result.getString("reading"));
+        assertEquals("123.45", result.getString("formattedReading"));
+        assertTrue(result.toString(), result.getBoolean("isReliable"));
+        assertEquals(0, result.getJSONArray("issues").length());
+    }
+
+    @Test
+    public void unitSpellingsAreStripped() throws Exception {
+        assertEquals("12345", validate("123.45m\u00B3", new JSONObject()).getString("reading"));
+        assertEquals("12345", validate("123.45 M^3", new JSONObject()).getString("reading"));
+        assertEquals("12345", validate("12345 l", new JSONObject()).getString("reading"));
+    }
+
+    @Test
+    public void onlyUsualConfusionsAreMapped() throws Exception {
+        assertEquals("01158", validate("OlI5B", meter(0)).getString("reading"));
+
+        JSONObject result = validate("12T45", meter(0));
+        assertEquals("1245", result.getString("reading"));
+        // Dropped, not guessed as 7, and the drop costs score
+        assertTrue(result.getDouble("score") < 0.95);
+    }
+
+    @Test
+    public void scanMinConfidenceMarksLowReadingsUnreliable() throws Exception {
+        JSONObject options = new JSONObject();
+        options.put("minConfidence", 0.99);
+        JSONObject result = validate("0012345", options);
+
+        assertFalse(result.getBoolean("isReliable"));
+        assertEquals(ReadingValidator.ISSUE_LOW_CONFIDENCE, result.getJSONArray("issues").getString(0));
+    }
+
+    private static JSONObject meter(int decimalPlaces) throws Exception {
+        JSONObject meter = new JSONObject();
+        meter.put("decimalPlaces", decimalPlaces);
+        JSONObject options = new JSONObject();
+        options.put("meter", meter);
+        return options;
+    }
+
+    private static JSONObject validate(String text, JSONObject options) throws Exception {
+        JSONObject result = new JSONObject();
+        result.put("text", text);
+        result.put("confidence", 0.95);
+        ReadingValidator.fromOptions(options).apply(result);
+        return result;
+    }
+}
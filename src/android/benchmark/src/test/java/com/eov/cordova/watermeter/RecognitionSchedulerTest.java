@@ -0,0 +1,130 @@
+package com.eov.cordova.watermeter;
+
+import org.apache.cordova.CallbackContext;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RecognitionSchedulerTest {
+
+    private final RecognitionScheduler scheduler = new RecognitionScheduler(1);
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void submitRejectsActiveIdAndKeepsOriginalJob() throws Exception {
+        RecognitionScheduler.Job original = scheduler.submit("meter-1", RecognitionScheduler.PRIORITY_INTERACTIVE,
+            new CallbackContext(), job -> {
+                started.countDown();
+                release.await();
+            });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        try {
+            scheduler.submit("meter-1", RecognitionScheduler.PRIORITY_INTERACTIVE, new CallbackContext(), job -> { });
+            fail("Duplicate id accepted");
+        } catch (RejectedExecutionException expected) {
+            // expected
+        }
+
+        assertEquals(RecognitionScheduler.STATE_RUNNING, scheduler.state("meter-1").getString("state"));
+        assertTrue(scheduler.cancel("meter-1"));
+        assertTrue(original.isCancelled());
+    }
+
+    @Test
+    public void interactiveJobsRunBeforeBackgroundInSubmitOrder() throws Exception {
+        blockWorker();
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        CountDownLatch done = new CountDownLatch(4);
+        submitRecording("background-1", RecognitionScheduler.PRIORITY_BACKGROUND, order, done);
+        submitRecording("interactive-1", RecognitionScheduler.PRIORITY_INTERACTIVE, order, done);
+        submitRecording("background-2", RecognitionScheduler.PRIORITY_BACKGROUND, order, done);
+        submitRecording("interactive-2", RecognitionScheduler.PRIORITY_INTERACTIVE, order, done);
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("interactive-1", "interactive-2", "background-1", "background-2"), order);
+    }
+
+    @Test
+    public void cancelledQueuedJobNeverRunsAndIsAnsweredAtOnce() throws Exception {
+        blockWorker();
+        List<String> errors = new ArrayList<>();
+        CallbackContext callback = new CallbackContext() {
+            @Override
+            public void error(String message) {
+                errors.add(message);
+            }
+        };
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        RecognitionScheduler.Job queued = scheduler.submit("queued", RecognitionScheduler.PRIORITY_INTERACTIVE, callback,
+            job -> order.add(job.id));
+        CountDownLatch done = new CountDownLatch(1);
+        submitRecording("after", RecognitionScheduler.PRIORITY_BACKGROUND, order, done);
+
+        assertTrue(scheduler.cancel("queued"));
+        // Answered by cancel() itself, before the worker is free
+        assertEquals(Collections.singletonList("Cancelled"), errors);
+        assertTrue(queued.isCancelled());
+        assertEquals(RecognitionScheduler.STATE_CANCELLED, scheduler.state("queued").getString("state"));
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList("after"), order);
+        assertFalse(scheduler.cancel("queued"));
+    }
+
+    @Test
+    public void trackRejectsActiveId() throws Exception {
+        RecognitionScheduler.Job original = scheduler.track("import-1", RecognitionScheduler.PRIORITY_BACKGROUND,
+            new CallbackContext());
+
+        try {
+            scheduler.track("import-1", RecognitionScheduler.PRIORITY_BACKGROUND, new CallbackContext());
+            fail("Duplicate id accepted");
+        } catch (RejectedExecutionException expected) {
+            // expected
+        }
+
+        scheduler.finish(original, RecognitionScheduler.STATE_COMPLETED);
+        assertEquals(RecognitionScheduler.STATE_COMPLETED, scheduler.state("import-1").getString("state"));
+        scheduler.track("import-1", RecognitionScheduler.PRIORITY_BACKGROUND, new CallbackContext());
+    }
+
+    /**
+     * Occupy the single worker until release, so later submissions queue up
+     */
+    private void blockWorker() throws Exception {
+        scheduler.submit("blocker", RecognitionScheduler.PRIORITY_INTERACTIVE, new CallbackContext(), job -> {
+            started.countDown();
+            release.await();
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+    }
+
+    private void submitRecording(String id, int priority, List<String> order, CountDownLatch done) {
+        scheduler.submit(id, priority, new CallbackContext(), job -> {
+            order.add(job.id);
+            done.countDown();
+        });
+    }
+}
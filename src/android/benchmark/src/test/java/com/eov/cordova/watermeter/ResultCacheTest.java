@@ -0,0 +1,59 @@
+package com.eov.cordova.watermeter;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class ResultCacheTest {
+
+    private static final byte[] IMAGE = {1, 2, 3, 4, 5, 6, 7, 8};
+
+    @Test
+    public void sameBytesAndOptionsGiveSameKey() throws Exception {
+        assertEquals(key(IMAGE, options("maxSideLength", 960), "v1"), key(IMAGE, options("maxSideLength", 960), "v1"));
+    }
+
+    @Test
+    public void keyCoversOnlyTheGivenSlice() throws Exception {
+        byte[] padded = new byte[IMAGE.length + 4];
+        System.arraycopy(IMAGE, 0, padded, 2, IMAGE.length);
+
+        assertEquals(key(IMAGE, null, "v1"), ResultCache.key(padded, 2, IMAGE.length, null, "v1"));
+        assertNotEquals(key(IMAGE, null, "v1"), ResultCache.key(IMAGE, 0, IMAGE.length - 1, null, "v1"));
+    }
+
+    @Test
+    public void pipelineOptionsAndModelChangeTheKey() throws Exception {
+        String base = key(IMAGE, options("maxSideLength", 960), "v1");
+
+        assertNotEquals(base, key(IMAGE, options("maxSideLength", 1280), "v1"));
+        assertNotEquals(base, key(IMAGE, options("maxSideLength", 960), "v2"));
+        JSONObject withRoi = options("maxSideLength", 960);
+        withRoi.put("roi", "0,0,100,50");
+        assertNotEquals(base, key(IMAGE, withRoi, "v1"));
+        assertNotEquals(key(IMAGE, null, "v1"), key(new byte[] {1, 2, 3}, null, "v1"));
+    }
+
+    @Test
+    public void otherOptionsDoNotChangeTheKey() throws Exception {
+        JSONObject extra = options("maxSideLength", 960);
+        extra.put("priority", "background");
+        extra.put("timings", true);
+        extra.put("cache", false);
+
+        assertEquals(key(IMAGE, options("maxSideLength", 960), "v1"), key(IMAGE, extra, "v1"));
+        assertEquals(key(IMAGE, null, "v1"), key(IMAGE, new JSONObject(), "v1"));
+    }
+
+    private static JSONObject options(String name, Object value) throws Exception {
+        JSONObject options = new JSONObject();
+        options.put(name, value);
+        return options;
+    }
+
+    private static String key(byte[] data, JSONObject options, String modelTag) {
+        return ResultCache.key(data, 0, data.length, options, modelTag);
+    }
+}
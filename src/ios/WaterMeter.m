@@ -350,8 +350,7 @@
         options = command.arguments[0];
     }
     
-    // Only read UI options, NOT auto-capture or confidence settings
-    // These should come from SDK's WMSettings (UI Settings screen)
+    // autoCapture/minConfidence are read in presentScannerWithOptions
     NSString *title = options[@"title"] ?: @"Quét đồng hồ nước";
     BOOL showCloseButton = options[@"showCloseButton"] ? [options[@"showCloseButton"] boolValue] : YES;
     
@@ -374,13 +373,16 @@
 }
 
 - (void)presentScannerWithOptions:(NSDictionary *)options command:(CDVInvokedUrlCommand *)command {
-    // Only read UI options - behavior settings come from SDK's WMSettings
     NSString *title = options[@"title"] ?: @"Quét đồng hồ nước";
     BOOL showCloseButton = options[@"showCloseButton"] ? [options[@"showCloseButton"] boolValue] : YES;
     NSInteger imageMaxWidth = options[@"imageMaxWidth"] ? [options[@"imageMaxWidth"] integerValue] : 0;
     NSInteger imageMaxHeight = options[@"imageMaxHeight"] ? [options[@"imageMaxHeight"] integerValue] : 0;
     
-    NSLog(@"[WaterMeter Plugin] presentScanner - UI options only, behavior from SDK settings");
+    // Behavior overrides only when the caller set them; -1 keeps the SDK's WMSettings values
+    NSInteger autoCaptureSet = options[@"autoCapture"] ? ([options[@"autoCapture"] boolValue] ? 1 : 0) : -1;
+    float minConfidenceSet = options[@"minConfidence"] ? [options[@"minConfidence"] floatValue] : -1.0f;
+    
+    NSLog(@"[WaterMeter Plugin] presentScanner - autoCapture=%ld, minConfidence=%.2f (-1 = SDK settings)", (long)autoCaptureSet, minConfidenceSet);
     NSLog(@"[WaterMeter Plugin] title=%@, showCloseButton=%d", title, showCloseButton);
     
     // Auto-initialize if needed (like Android)
@@ -393,11 +395,9 @@
             return;
         }
         
-        // Create scanner configuration - NO override for autoCapture/confidence
-        // Use -1 for all behavior settings to let SDK use WMSettings values
         WMScannerConfiguration_ObjC *config = [[WMScannerConfiguration_ObjC alloc]
-            initWithAutoCaptureSet:-1          // Use SDK settings
-                  minConfidenceSet:-1.0f       // Use SDK settings
+            initWithAutoCaptureSet:autoCaptureSet
+                  minConfidenceSet:minConfidenceSet
                    flashEnabled:NO
                 showCloseButton:showCloseButton
                           title:title
@@ -406,7 +406,7 @@
         
         // Present scanner
         NSError *error = nil;
-        NSLog(@"[WaterMeter Plugin] presentScanner about to call SDK (using SDK settings for behavior)");
+        NSLog(@"[WaterMeter Plugin] presentScanner about to call SDK");
         [[WaterMeterSDK shared] presentScannerWithConfiguration:config
                                                        delegate:self
                                                            from:self.viewController
@@ -10,6 +10,42 @@
 
 var exec = require('cordova/exec');
 
+var jobCounter = 0;
+
+/**
+ * Copy options and give them a jobId so the caller can cancel or query the job
+ */
+function withJobId(options) {
+    var copy = {};
+    for (var key in options) {
+        if (Object.prototype.hasOwnProperty.call(options, key)) {
+            copy[key] = options[key];
+        }
+    }
+    if (!copy.jobId) {
+        copy.jobId = 'job-' + Date.now().toString(36) + '-' + (++jobCounter);
+    }
+    return copy;
+}
+
+/**
+ * MIME type of encoded image bytes from their signature; JPEG when unknown
+ */
+function imageMimeType(buffer) {
+    var bytes = new Uint8Array(buffer, 0, Math.min(buffer.byteLength, 12));
+    if (bytes[0] === 0x89 && bytes[1] === 0x50 && bytes[2] === 0x4E && bytes[3] === 0x47) {
+        return 'image/png';
+    }
+    if (bytes[0] === 0x52 && bytes[1] === 0x49 && bytes[2] === 0x46 && bytes[3] === 0x46
+            && bytes[8] === 0x57 && bytes[9] === 0x45 && bytes[10] === 0x42 && bytes[11] === 0x50) {
+        return 'image/webp';
+    }
+    if (bytes[0] === 0x47 && bytes[1] === 0x49 && bytes[2] === 0x46) {
+        return 'image/gif';
+    }
+    return 'image/jpeg';
+}
+
 var WaterMeter = {
     /**
      * SDK Version
@@ -74,10 +110,22 @@ var WaterMeter = {
      * @param {string} options.title - Custom title for scanner screen (default: "Quét số đồng hồ")
      * @param {boolean} options.showCloseButton - Show close button (default: true)
      * @param {boolean} options.autoCloseOnResult - Auto close after scan (default: true)
-     * @param {boolean} options.autoCapture - Auto capture when meter detected (default: true)
-     * @param {number} options.minConfidence - Minimum confidence threshold (default: 0.7)
+     * @param {boolean} options.autoCapture - Auto capture when meter detected (default: SDK setting).
+     *                 iOS only; the Android scanner always follows its settings (openSettings)
+     * @param {number} options.minConfidence - Minimum confidence 0-1 (default: SDK setting). iOS: capture
+     *                 threshold of the scanner. Android: the scanner captures per its settings, and results
+     *                 below this are returned with isReliable: false and issue 'lowConfidence' (in
+     *                 scanSession with retryUnreliable they are rejected and the meter is scanned again)
      * @param {number} options.imageMaxWidth - Max width for saved image in pixels
      * @param {number} options.imageMaxHeight - Max height for saved image in pixels
+     * @param {string} options.imageResult - 'path' returns only imagePath (Android default, load it
+     *                 later with getThumbnail/getImageBytes); 'base64' also includes imageBase64.
+     *                 On Android the reading arrives first with imagePending: true, then the
+     *                 success callback fires again with imageBase64 and imagePending: false
+     * @param {Object} options.meter - Plausibility constraints (Android): {digitCount, decimalPlaces=3,
+     *                 previousReading, maxDelta, minConfidence=0.7}. Results then carry reading (normalized
+     *                 digits), formattedReading, isReliable, score, issues and, with previousReading, delta
+     * @param {string} options.meterId - Android: stored with the reading in the history log (queryHistory)
      * 
      * @example
      * WaterMeter.scan(
@@ -142,15 +190,80 @@ var WaterMeter = {
             config.imageMaxHeight = Math.floor(options.imageMaxHeight);
         }
 
+        if (options.imageResult) {
+            config.imageResult = options.imageResult;
+        }
+
+        if (options.meter) {
+            config.meter = options.meter;
+        }
+
+        if (options.meterId) {
+            config.meterId = options.meterId;
+        }
+
         exec(successCallback, errorCallback, 'WaterMeter', 'scan', [config]);
     },
 
+    /**
+     * Scan several meters in a row (Android)
+     * The camera does not stay open: the scanner screen closes and is relaunched for every meter,
+     * so each reading costs the same camera start-up as scan(). The session only saves the JS round
+     * trip between scans and the predictor reload. Readings of the same value within dedupeWindowMs
+     * are reported as duplicates.
+     * 
+     * @param {Function} onEvent - Called with {type: 'reading', index, text, confidence, imagePath},
+     *                             {type: 'duplicate', text, confidence},
+     *                             {type: 'rejected', reason: 'empty'|'unreliable', text, confidence} and finally
+     *                             {type: 'end', reason: 'maxReadings'|'cancelled', readings, duplicates, rejected}
+     * @param {Function} errorCallback - Called on error
+     * @param {Object} [options] - Same as scan() plus:
+     * @param {number} [options.maxReadings=0] - End the session after this many readings (0 = until closed)
+     * @param {number} [options.dedupeWindowMs=10000] - Drop repeats of the same reading within this window
+     * @param {boolean} [options.retryUnreliable=false] - Report readings that fail the options.meter checks
+     *                  as {type: 'rejected', reason: 'unreliable', ...} and rescan the same meter instead of
+     *                  counting them. Reads with no digits are always reported as {type: 'rejected', reason: 'empty'}
+     * 
+     * @example
+     * WaterMeter.scanSession(
+     *     function(event) {
+     *         if (event.type === 'reading') saveReading(event.text);
+     *         if (event.type === 'end') console.log(event.readings + ' meters read');
+     *     },
+     *     function(err) { console.error('Session error:', err); },
+     *     { maxReadings: 24, dedupeWindowMs: 15000 }
+     * );
+     */
+    scanSession: function (onEvent, errorCallback, options) {
+        if (typeof onEvent !== 'function' || typeof errorCallback !== 'function') {
+            console.error('WaterMeter.scanSession: callbacks must be functions');
+            return;
+        }
+        exec(onEvent, errorCallback, 'WaterMeter', 'scanSession', [options || {}]);
+    },
+
     /**
      * Recognize water meter reading from base64 encoded image
      * 
      * @param {string} base64Image - Base64 encoded image (with or without data URL prefix)
      * @param {Function} success - Success callback with OCR result
      * @param {Function} error - Error callback
+     * @param {Object} [options] - Recognition options (Android)
+     * @param {number} [options.maxSideLength=1920] - Downsample on decode so the longest side
+     *                 stays at or just above this value (0 = full resolution)
+     * @param {boolean} [options.lowMemory=false] - Decode to RGB_565 to halve bitmap memory
+     * @param {Object} [options.roi] - Only decode this region {x, y, width, height} in source pixels
+     * @param {boolean} [options.runDetection=true] - Set false when the image (or roi) is already
+     *                  cropped to the digit window; recognition runs on the whole input
+     * @param {boolean} [options.runClassification=true] - Set false when the input is known to be upright
+     * @param {boolean} [options.cache=true] - Use the result cache when it is enabled (configureResultCache)
+     * @param {Object} [options.meter] - Plausibility constraints, same as scan()
+     * @param {string} [options.meterId] - Stored with the reading in the history log (queryHistory)
+     * @param {boolean} [options.timings=false] - Attach per-stage timings to the result as
+     *                  result.timings {decodeMs, acquireMs, setInputMs, inferenceMs, extractMs, totalMs, bitmapBytes}
+     * @param {string} [options.priority='interactive'] - 'background' jobs wait behind interactive ones
+     * @param {string} [options.jobId] - Job id for cancelJob/getJobState, generated when omitted
+     * @returns {string} Job id; a cancelled job fails with 'Cancelled'
      * 
      * @example
      * WaterMeter.recognizeBase64(
@@ -162,12 +275,14 @@ var WaterMeter = {
      *     function(err) { console.error('Error:', err); }
      * );
      */
-    recognizeBase64: function (base64Image, success, error) {
+    recognizeBase64: function (base64Image, success, error, options) {
         if (!base64Image) {
             error && error('Missing base64 image data');
             return;
         }
-        exec(success, error, 'WaterMeter', 'recognizeBase64', [base64Image]);
+        options = withJobId(options);
+        exec(success, error, 'WaterMeter', 'recognizeBase64', [base64Image, options]);
+        return options.jobId;
     },
 
     /**
@@ -176,13 +291,213 @@ var WaterMeter = {
      * @param {string} filePath - Path to image file (supports file://, cdvfile://)
      * @param {Function} success - Success callback with OCR result
      * @param {Function} error - Error callback
+     * @param {Object} [options] - Recognition options, same as recognizeBase64
+     * @returns {string} Job id
+     */
+    recognizeFile: function (filePath, success, error, options) {
+        if (!filePath) {
+            error && error('Missing file path');
+            return;
+        }
+        options = withJobId(options);
+        exec(success, error, 'WaterMeter', 'recognizeFile', [filePath, options]);
+        return options.jobId;
+    },
+
+    /**
+     * Recognize water meter reading from raw image bytes (Android)
+     * Avoids building a base64 data URL in JS and parsing it natively.
+     * 
+     * @param {ArrayBuffer|Uint8Array} imageData - Encoded JPEG/PNG bytes
+     * @param {Function} success - Success callback with OCR result
+     * @param {Function} error - Error callback
+     * @param {Object} [options] - Recognition options, same as recognizeBase64
+     * @returns {string} Job id
+     */
+    recognizeBytes: function (imageData, success, error, options) {
+        if (!imageData || !imageData.byteLength) {
+            error && error('Missing image data');
+            return;
+        }
+        if (ArrayBuffer.isView(imageData)) {
+            imageData = imageData.buffer.slice(imageData.byteOffset, imageData.byteOffset + imageData.byteLength);
+        }
+        options = withJobId(options);
+        exec(success, error, 'WaterMeter', 'recognizeBytes', [imageData, options]);
+        return options.jobId;
+    },
+
+    /**
+     * Read an image file as an ArrayBuffer (Android)
+     * 
+     * @param {string} filePath - Path to image file, e.g. result.imagePath from scan()
+     * @param {Function} success - Called with an ArrayBuffer
+     * @param {Function} error - Error callback
+     * @param {Object} [options] - Read options
+     * @param {number} [options.maxSide] - Downsample and re-encode as JPEG; omit to get the original bytes
+     * @param {number} [options.quality=80] - JPEG quality when maxSide is set
      */
-    recognizeFile: function (filePath, success, error) {
+    getImageBytes: function (filePath, success, error, options) {
         if (!filePath) {
             error && error('Missing file path');
             return;
         }
-        exec(success, error, 'WaterMeter', 'recognizeFile', [filePath]);
+        exec(success, error, 'WaterMeter', 'getImageBytes', [filePath, options || {}]);
+    },
+
+    /**
+     * Get a JPEG thumbnail of an image file (Android)
+     * Thumbnails are generated off the UI thread and kept in a size-bounded LRU disk cache
+     * keyed by path, modification time and size, so list screens don't re-decode originals.
+     * 
+     * @param {string} filePath - Path to image file, e.g. result.imagePath from scan()
+     * @param {Function} success - Called with {thumbnailPath, cached, bytes, imageBase64?} or an ArrayBuffer
+     * @param {Function} error - Error callback
+     * @param {Object} [options] - Thumbnail options
+     * @param {number} [options.maxSide=320] - Longest side of the thumbnail in pixels
+     * @param {number} [options.quality=70] - JPEG quality 1-100
+     * @param {string} [options.format='path'] - 'path', 'base64' (adds imageBase64) or 'arraybuffer'
+     */
+    getThumbnail: function (filePath, success, error, options) {
+        if (!filePath) {
+            error && error('Missing file path');
+            return;
+        }
+        exec(success, error, 'WaterMeter', 'getThumbnail', [filePath, options || {}]);
+    },
+
+    /**
+     * Delete all cached thumbnails (Android)
+     * @param {Function} success - Called with cache stats
+     * @param {Function} error - Error callback
+     */
+    clearThumbnailCache: function (success, error) {
+        exec(success, error, 'WaterMeter', 'clearThumbnailCache', []);
+    },
+
+    /**
+     * Recognize a batch of image files (Android)
+     * Images are decoded ahead of inference with a bounded number of workers.
+     * The success callback fires once per image with a progress event, then once
+     * more with the final summary.
+     * 
+     * @param {string[]} filePaths - Paths to image files
+     * @param {Object} [options] - Batch options
+     * @param {number} [options.concurrency=2] - Max images decoded ahead of inference
+     * @param {boolean} [options.includeResults=true] - Include all item results in the summary
+     * @param {number} [options.maxSideLength=1920] - Decode options, same as recognizeBase64
+     * @param {string} [options.priority='background'] - Queue priority of the batch's recognitions
+     * @param {string} [options.jobId] - Job id, generated when omitted; cancelJob stops before the next image
+     * @param {Function} success - Called with {type: 'progress', completed, total, item}
+     *                             and finally {type: 'complete', jobId, total, completed, cancelled,
+     *                             succeeded, failed, durationMs, results}
+     * @param {Function} error - Error callback
+     * @returns {string} Job id
+     * 
+     * @example
+     * WaterMeter.recognizeBatch(paths, { concurrency: 3 },
+     *     function(event) {
+     *         if (event.type === 'progress') {
+     *             console.log(event.completed + '/' + event.total, event.item.result);
+     *         } else {
+     *             console.log('Done in', event.durationMs, 'ms');
+     *         }
+     *     },
+     *     function(err) { console.error('Batch error:', err); }
+     * );
+     */
+    recognizeBatch: function (filePaths, options, success, error) {
+        if (!Array.isArray(filePaths) || filePaths.length === 0) {
+            error && error('Missing file paths');
+            return;
+        }
+        options = withJobId(options);
+        exec(success, error, 'WaterMeter', 'recognizeBatch', [filePaths, options]);
+        return options.jobId;
+    },
+
+    /**
+     * Recognize every matching image in a directory tree (Android)
+     * The folder is walked lazily in sorted order and each result is appended as one JSON line
+     * to an NDJSON output file, so nothing accumulates in JS memory. Progress is checkpointed;
+     * pass the resumeToken from an interrupted run to continue after the last recorded image.
+     * 
+     * @param {string} directory - Directory path (file:// accepted)
+     * @param {Object} [options] - Import options
+     * @param {string} [options.glob='*.{jpg,jpeg,png}'] - File name pattern, case-insensitive
+     * @param {number} [options.since=0] - Only images modified after this epoch time (ms)
+     * @param {string} [options.resumeToken] - Token of a previous run; its glob, since and output are reused
+     * @param {string} [options.outputPath] - NDJSON file to write, path or file:// URL (default in the app
+     *                                        files dir); must not exist yet unless resuming
+     * @param {number} [options.checkpointEvery=20] - Images between checkpoints
+     * @param {string} [options.priority='background'] - Queue priority, see recognizeBase64
+     * @param {Function} success - Called with {type: 'progress', processed, succeeded, failed, item, resumeToken}
+     *                             and finally {type: 'complete', resumeToken, complete, cancelled, processed,
+     *                             newlyProcessed, succeeded, failed, outputPath, durationMs}
+     * @param {Function} error - Error callback
+     * @returns {string} Job id, cancelJob stops the import at the next image
+     */
+    recognizeDirectory: function (directory, options, success, error) {
+        if (!directory) {
+            error && error('Missing directory');
+            return;
+        }
+        options = withJobId(options);
+        exec(success, error, 'WaterMeter', 'recognizeDirectory', [directory, options]);
+        return options.jobId;
+    },
+
+    /**
+     * Recognize several photos of the same meter and fuse them into one reading (Android)
+     * Frames run concurrently through the predictor pool; each digit is decided by a
+     * confidence-weighted vote, and remaining frames are skipped once agreement reaches threshold.
+     * 
+     * @param {string[]} images - File paths or base64 images (data URLs accepted), in any mix
+     * @param {Object} [options] - Consensus options, plus decode options as for recognizeBase64
+     * @param {number} [options.threshold=0.9] - Agreement (0-1) at which to stop early
+     * @param {number} [options.minFrames=2] - Frames that must be read before stopping early
+     * @param {number} [options.concurrency] - Frames in flight at once (default predictor pool size)
+     * @param {Object} [options.meter] - Reading constraints, see scan
+     * @param {string} [options.priority='interactive'] - Queue priority, see recognizeBase64
+     * @param {Function} success - Called with {text, confidence, success, reading, formattedReading, isReliable,
+     *                             agreement, supportingFrames, framesUsed, framesTotal, stoppedEarly,
+     *                             frames: [{index, text, reading, confidence} | {index, error}], durationMs}
+     * @param {Function} error - Error callback
+     * @returns {string} Job id
+     */
+    recognizeConsensus: function (images, options, success, error) {
+        if (!images || images.length === 0) {
+            error && error('No images provided');
+            return;
+        }
+        options = withJobId(options);
+        exec(success, error, 'WaterMeter', 'recognizeConsensus', [images, options]);
+        return options.jobId;
+    },
+
+    /**
+     * Cancel a recognition job (Android)
+     * Queued jobs are dropped without decoding; running jobs stop before inference
+     * (batches before the next image).
+     * 
+     * @param {string} jobId - Id returned by recognizeBase64/File/Bytes/Batch
+     * @param {Function} success - Called with {jobId, cancelled}; cancelled is false for unknown or finished jobs
+     * @param {Function} error - Error callback
+     */
+    cancelJob: function (jobId, success, error) {
+        exec(success, error, 'WaterMeter', 'cancelJob', [jobId]);
+    },
+
+    /**
+     * Get the state of a recognition job, or queue stats when jobId is omitted (Android)
+     * 
+     * @param {string} [jobId] - Job id
+     * @param {Function} success - Called with {jobId, state: 'queued'|'running'|'completed'|'cancelled',
+     *                             priority, queuedAt, startedAt?, finishedAt?} or {queued, running, workers, maxQueued}
+     * @param {Function} error - Error callback
+     */
+    getJobState: function (jobId, success, error) {
+        exec(success, error, 'WaterMeter', 'getJobState', [jobId || null]);
     },
 
     /**
@@ -212,8 +527,28 @@ var WaterMeter = {
         exec(success, error, 'WaterMeter', 'getVersion', []);
     },
 
+    /**
+     * Preload the OCR predictor so the first recognition is not cold (Android)
+     * Also runs automatically in the background after initializeLicense succeeds.
+     * 
+     * @param {Object} [options] - Preload options
+     * @param {boolean} [options.warmup=true] - Run a synthetic inference after loading
+     * @param {Function} success - Called with {state, warmedUp, initMs, warmupMs, totalMs, cached}
+     * @param {Function} error - Error callback
+     * 
+     * @example
+     * WaterMeter.preload({ warmup: true },
+     *     function(t) { console.log('Predictor ready in', t.totalMs, 'ms'); },
+     *     function(err) { console.error('Preload failed:', err); }
+     * );
+     */
+    preload: function (options, success, error) {
+        exec(success, error, 'WaterMeter', 'preload', [options || {}]);
+    },
+
     /**
      * Check if SDK is initialized
+     * On Android the result is {initialized: boolean, state: 'idle'|'warming'|'ready'|'error', preload?}
      * @param {Function} success - Success callback with boolean
      * @param {Function} error - Error callback
      */
@@ -230,6 +565,184 @@ var WaterMeter = {
         exec(success, error, 'WaterMeter', 'reset', []);
     },
 
+    /**
+     * Configure the OCR predictor pool (Android)
+     * Each recognition checks out its own predictor, so concurrent calls run in parallel
+     * up to maxSize. Extra predictors are loaded on demand and released when idle.
+     * 
+     * @param {Object} options - Pool options
+     * @param {number} [options.maxSize=2] - Max predictors loaded at once (capped by CPU cores, max 4)
+     * @param {number} [options.idleTimeoutMs=60000] - Release extra predictors idle longer than this
+     * @param {number} [options.maxQueuedJobs=500] - Recognitions beyond this many queued jobs are rejected
+     * @param {number} [options.cpuThreads=0] - Inference threads per predictor (0 = CPU cores / maxSize)
+     * @param {string} [options.powerMode='LITE_POWER_HIGH'] - Paddle Lite power mode, e.g. 'LITE_POWER_NO_BIND'
+     * @param {boolean} [options.useGPU=false] - Run inference through OpenCL where the device supports it
+     * @param {string} [options.modelPath='models'] - Model asset directory for extra or tuned predictors
+     * @param {string} [options.labelPath='labels/ppocr_keys_v1.txt'] - Label asset file for extra or tuned predictors
+     * @param {Function} success - Called with {maxSize, cpuThreads, powerMode, useGPU, live, extraPredictors, idle,
+     *                             inUse, idleTimeoutMs, jobs}; extraPredictors is false when those paths failed
+     *                             to load and only the SDK predictor is used
+     * @param {Function} error - Error callback
+     */
+    configurePredictorPool: function (options, success, error) {
+        exec(success, error, 'WaterMeter', 'configurePredictorPool', [options || {}]);
+    },
+
+    /**
+     * Find the fastest predictor settings for this device (Android)
+     * Times several thread count / power mode combinations with a synthetic image and stores
+     * the fastest per device model and pool size; later pool creations apply it automatically.
+     * A stored profile is returned without re-running unless force is set.
+     * 
+     * @param {Object} [options] - Tuning options
+     * @param {boolean} [options.force=false] - Re-run even when a profile is stored
+     * @param {number} [options.iterations=3] - Timed inferences per configuration
+     * @param {boolean} [options.includeGPU=false] - Also try the OpenCL backend
+     * @param {Function} success - Called with {cpuThreads, powerMode, useGPU, latencyMs, device, cores,
+     *                             poolSize, tunedAt, candidates: [{cpuThreads, powerMode, useGPU, latencyMs|error}], cached}
+     * @param {Function} error - Error callback
+     * 
+     * @example
+     * WaterMeter.initializeLicense(key, function() {
+     *     WaterMeter.autoTune({}, function(p) { console.log('Using', p.cpuThreads, 'threads'); });
+     * });
+     */
+    autoTune: function (options, success, error) {
+        exec(success, error, 'WaterMeter', 'autoTune', [options || {}]);
+    },
+
+    /**
+     * Configure the recognition result cache (Android)
+     * Results are keyed by a hash of the image bytes plus the pipeline options, so re-submitting
+     * the same photo returns in milliseconds with cached: true. Cleared by reset().
+     * 
+     * @param {Object} options - Cache options
+     * @param {boolean} [options.enabled=false] - Turn the cache on or off
+     * @param {number} [options.maxEntries=200] - In-memory entries
+     * @param {number} [options.maxDiskEntries=5000] - Persistent entries (0 = memory only)
+     * @param {number} [options.maxAgeMs=604800000] - Entries older than this are ignored and purged
+     * @param {boolean} [options.clear=false] - Drop all entries first
+     * @param {Function} success - Called with {enabled, hits, diskHits, misses, hitRate, memoryEntries, diskEntries, ...}
+     * @param {Function} error - Error callback
+     */
+    configureResultCache: function (options, success, error) {
+        exec(success, error, 'WaterMeter', 'configureResultCache', [options || {}]);
+    },
+
+    /**
+     * Configure the decode bitmap pool (Android)
+     * Recognition decodes into pooled bitmaps (inBitmap) and scan images are encoded through
+     * reusable buffers, so batches stop allocating per image once warm. Trimmed on memory pressure.
+     * 
+     * @param {Object} [options] - Pool options
+     * @param {number} [options.maxBytes] - Pixel memory kept for reuse (default 32 MB, at most 1/8 of the heap)
+     * @param {boolean} [options.clear=false] - Release pooled bitmaps first
+     * @param {Function} success - Called with {entries, bytes, maxBytes, hits, misses, hitRate, puts, evictions,
+     *                             bytesSaved, encodeBuffers: {encodes, hits, hitRate, bytesSaved}}
+     * @param {Function} error - Error callback
+     */
+    configureBitmapPool: function (options, success, error) {
+        exec(success, error, 'WaterMeter', 'configureBitmapPool', [options || {}]);
+    },
+
+    /**
+     * Get recognition metrics (Android)
+     * Per-stage latency percentiles over the last 1024 recognitions plus all-time count/mean/max.
+     * 
+     * @param {Function} success - Called with {count, errors, since, stages: {decode, acquire, setInput,
+     *                             inference, extract, total: {count, mean, p50, p95, p99, max}}, bitmapBytes,
+     *                             resultCache, bitmapPool, encodeBuffers}
+     * @param {Function} error - Error callback
+     */
+    getMetrics: function (success, error) {
+        exec(success, error, 'WaterMeter', 'getMetrics', []);
+    },
+
+    /**
+     * Get memory usage (Android)
+     * The plugin also releases predictors and in-memory caches on its own when Android reports
+     * memory pressure; they are reloaded on the next request.
+     * 
+     * @param {Function} success - Called with {javaHeap: {used, total, max}, nativeHeap: {allocated, size},
+     *                             system: {available, total, threshold, lowMemory}, memoryClassMb, lowRamDevice,
+     *                             trimCount, lastTrim?: {level, at}, predictors?, resultCache?, thumbnailCache?,
+     *                             bitmapPool?}
+     * @param {Function} error - Error callback
+     */
+    getMemoryStatus: function (success, error) {
+        exec(success, error, 'WaterMeter', 'getMemoryStatus', []);
+    },
+
+    /**
+     * Query the reading history (Android)
+     * Every scan and recognize* result is appended to a local HMAC-chained log with its
+     * confidence, stage timings, image path and meterId. Cache hits are recorded with cached: true;
+     * recognizeConsensus records only the fused reading (source "consensus").
+     * 
+     * @param {Object} [options] - Filter
+     * @param {number} [options.from] - Earliest timestamp (ms since epoch)
+     * @param {number} [options.to] - Latest timestamp (ms since epoch)
+     * @param {string} [options.meterId] - Only readings recorded with this meterId
+     * @param {number} [options.limit=100] - Maximum entries returned
+     * @param {Function} success - Called with {entries: [{seq, timestamp, source, text, reading, confidence,
+     *                             isReliable, cached?, meterId?, imagePath?, timings?, hash}], hasMore, totalRecords,
+     *                             headHash},
+     *                             newest first
+     * @param {Function} error - Error callback
+     */
+    queryHistory: function (options, success, error) {
+        exec(success, error, 'WaterMeter', 'queryHistory', [options || {}]);
+    },
+
+    /**
+     * Export the reading history as NDJSON, oldest first (Android)
+     * 
+     * @param {Object} [options] - Same filter as queryHistory, without limit
+     * @param {string} [options.outputPath] - Target file (default: a new file in the app's files directory)
+     * @param {Function} success - Called with {path, count, bytes, headHash}
+     * @param {Function} error - Error callback
+     */
+    exportHistory: function (options, success, error) {
+        exec(success, error, 'WaterMeter', 'exportHistory', [options || {}]);
+    },
+
+    /**
+     * Check that no recorded reading was changed or removed (Android)
+     * Deleting the whole log, or restoring an older copy of all its files, is not detectable on the
+     * device; compare headHash and records against values sent to a server for that.
+     * 
+     * @param {Function} success - Called with {valid, records, segments, headHash} or, when the chain
+     *                             is broken, {valid: false, brokenAt: {segment, seq, reason}};
+     *                             reason is hash, sequence, segmentLink, checkpoint or key
+     * @param {Function} error - Error callback
+     */
+    verifyHistory: function (success, error) {
+        exec(success, error, 'WaterMeter', 'verifyHistory', []);
+    },
+
+    /**
+     * Configure the reading history (Android)
+     * 
+     * @param {Object} [options] - History options
+     * @param {boolean} [options.enabled=true] - Record readings
+     * @param {number} [options.maxSegmentBytes=4194304] - Start a new segment file past this size
+     * @param {number} [options.maxSegmentAgeMs=86400000] - Start a new segment file after this long
+     * @param {Function} success - Called with {enabled, records, segments, bytes, headHash, appendErrors, ...}
+     * @param {Function} error - Error callback
+     */
+    configureHistory: function (options, success, error) {
+        exec(success, error, 'WaterMeter', 'configureHistory', [options || {}]);
+    },
+
+    /**
+     * Clear recognition metrics (Android)
+     * @param {Function} success - Success callback
+     * @param {Function} error - Error callback
+     */
+    resetMetrics: function (success, error) {
+        exec(success, error, 'WaterMeter', 'resetMetrics', []);
+    },
+
     /**
      * Open SDK settings screen
      * Allows user to configure auto-capture, confidence threshold, etc.
@@ -277,15 +790,38 @@ var WaterMeter = {
         });
     },
 
+    /**
+     * Load an image file into a blob: URL for <img> tags without base64 (Android)
+     * Revoke the URL with URL.revokeObjectURL() when it is no longer displayed. The blob type
+     * follows the file's signature (JPEG, PNG, WebP, GIF).
+     * 
+     * @param {string} filePath - Path to image file
+     * @param {Object} [options] - Same as getImageBytes
+     * @returns {Promise<string>} Object URL
+     */
+    getImageObjectUrl: function (filePath, options) {
+        return new Promise(function (resolve, reject) {
+            WaterMeter.getImageBytes(filePath, function (buffer) {
+                resolve(URL.createObjectURL(new Blob([buffer], { type: imageMimeType(buffer) })));
+            }, reject, options);
+        });
+    },
+
     /**
      * Format meter reading with decimal point
      * 
      * @param {string} text - Raw reading text
-     * @param {number} [decimalPlaces=3] - Number of decimal places
+     * @param {number} [decimalPlaces=3] - Number of decimal places; 0 returns the text unchanged,
+     *                                      like formattedReading on Android
      * @returns {string} Formatted reading
      */
     formatReading: function (text, decimalPlaces) {
-        decimalPlaces = decimalPlaces || 3;
+        if (decimalPlaces === undefined || decimalPlaces === null) {
+            decimalPlaces = 3;
+        }
+        if (decimalPlaces <= 0) {
+            return text;
+        }
         if (!text || text.length <= decimalPlaces) {
             return text;
         }